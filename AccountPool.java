@@ -0,0 +1,272 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * AccountPool runs calls for many accounts on one {@link CloudBankClientFactory}, and shares the calls in flight
+ * fairly between them. Each account has its own queue. Accounts with queued calls take turns in weighted
+ * round-robin order: on its turn an account starts up to its weight in calls, so an account with weight 2 gets
+ * twice the share of one with weight 1, and an account with thousands of queued calls cannot hold back the others.
+ * <p>
+ * <br>
+ * Calls only start while they fit under the limits of {@link AccountPoolOptions}: across the pool, per account and
+ * per CloudService host. A call that does not fit waits in its account's queue without holding a thread.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>AccountPool pool = new AccountPool(factory, new AccountPoolOptions());</code>
+ * <br>
+ * <code>pool.add("customer-1", bankKeys, 1);</code>
+ * <br>
+ * <code>pool.submit("customer-1", account -> account.withdrawStack(10)).thenAccept(stack -> {</code>
+ * <br>
+ * <code>// This code runs after the server call is complete</code>
+ * <br>
+ * <code>});</code>
+ */
+public class AccountPool {
+
+
+    // Fields
+
+    private final CloudBankClientFactory factory;
+    private final AccountPoolOptions options;
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hosts = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Accounts that have just been given work. The dispatch loop moves them into its ring.
+    private final Queue<Account> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    // Only touched by the thread running the dispatch loop.
+    private final ArrayDeque<Account> ring = new ArrayDeque<>();
+
+
+    // Constructor
+
+    public AccountPool(CloudBankClientFactory factory, AccountPoolOptions options) {
+        this.factory = factory;
+        this.options = options;
+    }
+
+
+    // Methods
+
+    /**
+     * Adds an account to the pool.
+     *
+     * @param accountId identifies the account in calls to {@link #submit}
+     * @param bankKeys  the {@link BankKeys} object containing the encryption keys for the account
+     * @param weight    the account's share of the calls in flight, relative to the other accounts. At least 1.
+     * @throws IllegalArgumentException if {@code accountId} is already in the pool, or {@code weight} is below 1
+     */
+    public void add(String accountId, BankKeys bankKeys, int weight) {
+        if (weight < 1)
+            throw new IllegalArgumentException("The weight of an account must be at least 1, not " + weight);
+        AtomicInteger host = hosts.computeIfAbsent(bankKeys.publickey, key -> new AtomicInteger());
+        Account account = new Account(factory.create(bankKeys), host, weight);
+        if (accounts.putIfAbsent(accountId, account) != null)
+            throw new IllegalArgumentException("Account " + accountId + " is already in the pool");
+    }
+
+    /**
+     * Removes an account from the pool. Calls already queued for it still run.
+     *
+     * @param accountId the account to remove
+     * @returns true if the account was in the pool
+     */
+    public boolean remove(String accountId) {
+        return accounts.remove(accountId) != null;
+    }
+
+    /**
+     * Returns the ids of the accounts in the pool.
+     *
+     * @returns {@link Set}
+     */
+    public Set<String> getAccountIds() {
+        return accounts.keySet();
+    }
+
+    /**
+     * Queues a call for an account. {@code call} is given the account's {@link CloudBankUtils} once the call's turn
+     * comes, and must start one server call and return its future.
+     * <p>
+     * <br>
+     * <h3>Usage</h3>
+     * <p>
+     * <code>pool.submit(accountId, CloudBankUtils::getBankTotal)</code>
+     *
+     * @param accountId the account to call
+     * @param call      starts the call on the account's {@link CloudBankUtils}
+     * @returns {@link CompletableFuture} that completes with the call's result
+     * @throws IllegalArgumentException if {@code accountId} is not in the pool
+     */
+    public <T> CompletableFuture<T> submit(String accountId,
+                                           Function<CloudBankUtils, ? extends CompletableFuture<T>> call) {
+        Account account = accounts.get(accountId);
+        if (account == null)
+            throw new IllegalArgumentException("Account " + accountId + " is not in the pool");
+        CompletableFuture<T> result = new CompletableFuture<>();
+        account.queued.incrementAndGet();
+        account.queue.add(() -> start(account, call, result));
+        if (account.scheduled.compareAndSet(false, true))
+            ready.add(account);
+        drain();
+        return result;
+    }
+
+    /**
+     * Adds up the balances of every account in the pool. The balances are asked for concurrently through the pool,
+     * with {@link CloudBankUtils#getBalance}, so a recent balance is reused.
+     *
+     * @returns {@link CompletableFuture} that completes with the sum of every account's {@link BankTotal}, or
+     * exceptionally with the first account's failure
+     */
+    public CompletableFuture<BankTotal> getTotalBalance() {
+        List<CompletableFuture<BankTotal>> balances = new ArrayList<>();
+        for (String accountId : accounts.keySet())
+            balances.add(submit(accountId, CloudBankUtils::getBalance));
+        return CompletableFuture.allOf(balances.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            BankTotal total = new BankTotal();
+            for (CompletableFuture<BankTotal> balance : balances) {
+                BankTotal bankTotal = balance.join();
+                total.ones += bankTotal.ones;
+                total.fives += bankTotal.fives;
+                total.twentyfives += bankTotal.twentyfives;
+                total.hundreds += bankTotal.hundreds;
+                total.twohundredfifties += bankTotal.twohundredfifties;
+            }
+            total.status = "coins_shown";
+            return total;
+        });
+    }
+
+    /**
+     * Returns the number of calls in flight across the pool.
+     *
+     * @returns int
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of calls queued for an account and not yet started, or 0 if it is not in the pool.
+     *
+     * @param accountId the account
+     * @returns int
+     */
+    public int getQueued(String accountId) {
+        Account account = accounts.get(accountId);
+        return account == null ? 0 : account.queued.get();
+    }
+
+    private <T> void start(Account account, Function<CloudBankUtils, ? extends CompletableFuture<T>> call,
+                           CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(account.cloudBankUtils);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((value, t) -> {
+            account.inFlight.decrementAndGet();
+            account.host.decrementAndGet();
+            inFlight.decrementAndGet();
+            drain();
+            if (t != null)
+                result.completeExceptionally(t instanceof CompletionException && t.getCause() != null
+                        ? t.getCause() : t);
+            else
+                result.complete(value);
+        });
+    }
+
+    /**
+     * Starts queued calls in weighted round-robin order until the limits are reached or no account can start one.
+     * A call made while another thread is dispatching returns at once, and that thread runs the loop again for it.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0)
+            return;
+        do {
+            Account account;
+            while ((account = ready.poll()) != null)
+                ring.add(account);
+            // Stop once every account in the ring has had a turn without starting anything.
+            int idle = 0;
+            while (!ring.isEmpty() && idle < ring.size() && inFlight.get() < options.maxConcurrentCalls) {
+                account = ring.poll();
+                int started = 0;
+                while (started < account.weight && canStart(account)) {
+                    Runnable call = account.queue.poll();
+                    if (call == null)
+                        break;
+                    account.queued.decrementAndGet();
+                    account.inFlight.incrementAndGet();
+                    account.host.incrementAndGet();
+                    inFlight.incrementAndGet();
+                    started++;
+                    call.run();
+                }
+                idle = started == 0 ? idle + 1 : 0;
+                if (!account.queue.isEmpty()) {
+                    ring.add(account);
+                } else {
+                    account.scheduled.set(false);
+                    // A call queued after the check above would otherwise be left behind.
+                    if (!account.queue.isEmpty() && account.scheduled.compareAndSet(false, true))
+                        ring.add(account);
+                }
+            }
+        } while (drainRequests.decrementAndGet() != 0);
+    }
+
+    private boolean canStart(Account account) {
+        return inFlight.get() < options.maxConcurrentCalls
+                && account.inFlight.get() < options.maxConcurrentCallsPerAccount
+                && account.host.get() < options.maxConcurrentCallsPerHost;
+    }
+
+
+    /**
+     * Account is one account of the pool, with its queue of calls that have not started yet.
+     */
+    private static final class Account {
+
+        final CloudBankUtils cloudBankUtils;
+        final AtomicInteger host;
+        final int weight;
+        final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Account(CloudBankUtils cloudBankUtils, AtomicInteger host, int weight) {
+            this.cloudBankUtils = cloudBankUtils;
+            this.host = host;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code AccountPoolOptions} configures an {@link AccountPool}. Every field has a default, so only the settings that
+ * differ need to be changed.
+ *
+ * <h3>Usage</h3>
+ * <p>
+ * <code>AccountPoolOptions options = new AccountPoolOptions();
+ * <br>
+ * options.maxConcurrentCallsPerAccount = 2;</code>
+ */
+public class AccountPoolOptions {
+
+
+    // Fields
+
+    /**
+     * The largest number of calls in flight across every account of the pool.
+     */
+    public int maxConcurrentCalls = 256;
+
+    /**
+     * The largest number of calls in flight for one account. Set it to 1 to run the older methods of
+     * {@link CloudBankUtils}, such as {@link CloudBankUtils#showCoins}, which keep their results in the object and
+     * must not overlap.
+     */
+    public int maxConcurrentCallsPerAccount = 4;
+
+    /**
+     * The largest number of calls in flight to one CloudService host, across every account on it. Keep it at or
+     * below the factory's {@link CloudBankClientFactory.Builder#setMaxConcurrentCallsPerHost} limit, so that calls
+     * wait in the pool, where they are scheduled fairly, rather than in the host's bulkhead.
+     */
+    public int maxConcurrentCallsPerHost = 64;
+
+
+    // Constructor
+
+    public AccountPoolOptions() {
+
+    }
+}
@@ -0,0 +1,178 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * {@code AdaptiveLimit} tunes the {@link Bulkhead} limit of one CloudService host from the round-trip times of its
+ * calls, with additive increase and multiplicative decrease (AIMD). Each kind of call keeps its own baseline, the
+ * shortest round trip seen lately, because a deposit of a large stack takes far longer than a balance check.
+ * <p>
+ * <br>
+ * A call that comes back within {@link #TOLERANCE} times its baseline while the limit is in use raises the limit by
+ * one over the current limit, so the limit grows by about one each time a full limit of calls completes. A call that
+ * comes back slower than that, or fails because the host is overloaded or unreachable, cuts the limit by
+ * {@link #BACKOFF}, once for the calls that were sent before the cut. The limit therefore settles where queueing at
+ * the server starts to add latency, instead of where the server collapses.
+ */
+final class AdaptiveLimit {
+
+
+    // Fields
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveLimit.class);
+
+    /**
+     * How many times its baseline a round trip may take before the host is treated as queueing.
+     */
+    static final double TOLERANCE = 2.0;
+
+    /**
+     * The factor the limit is multiplied by when the host is queueing or overloaded.
+     */
+    static final double BACKOFF = 0.9;
+
+    // A baseline that has not been lowered for this long moves an eighth of the way towards the next slower round
+    // trip, so it follows a host that has become slower for good, but not a burst of queueing.
+    private static final long BASELINE_AGE = TimeUnit.SECONDS.toNanos(10);
+    private static final int BASELINE_DRIFT = 8;
+
+    private final String host;
+    private final Bulkhead bulkhead;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime());
+    private final AtomicLongArray baselines = new AtomicLongArray(CloudOperation.values().length);
+    private final AtomicLongArray baselinesSetAt = new AtomicLongArray(CloudOperation.values().length);
+
+
+    // Constructor
+
+    /**
+     * @param host     the host, for log messages
+     * @param bulkhead the bulkhead whose limit is tuned
+     * @param minLimit the lowest limit, at least 1
+     * @param maxLimit the highest limit
+     * @param initial  the limit to start from
+     */
+    AdaptiveLimit(String host, Bulkhead bulkhead, int minLimit, int maxLimit, int initial) {
+        this.host = host;
+        this.bulkhead = bulkhead;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        double start = Math.max(this.minLimit, Math.min(this.maxLimit, initial));
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(start));
+        for (int i = 0; i < baselines.length(); i++)
+            baselines.set(i, Long.MAX_VALUE);
+        bulkhead.setLimit((int) start);
+    }
+
+
+    // Methods
+
+    /**
+     * Records the round trip of a call that was sent to the host, and changes the bulkhead's limit if it calls for
+     * it. Cancelled calls say nothing about the host and are ignored.
+     *
+     * @param operation the kind of call
+     * @param sentAt    System.nanoTime() when the request was sent
+     * @param failure   why the call failed, or null if it succeeded
+     */
+    void onSample(CloudOperation operation, long sentAt, Throwable failure) {
+        Throwable cause = CallPolicy.unwrap(failure);
+        if (cause instanceof CancellationException)
+            return;
+        long now = System.nanoTime();
+        if (cause != null && isOverload(cause)) {
+            decrease(sentAt, now);
+            return;
+        }
+
+        long rttNanos = now - sentAt;
+        long baseline = updateBaseline(operation.ordinal(), rttNanos, now);
+        if (rttNanos > baseline * TOLERANCE) {
+            decrease(sentAt, now);
+        } else if (bulkhead.getInUse() + 1 >= getLimit() / 2) {
+            // Only grow a limit that is being used, or an idle host would talk it up without any evidence.
+            increase();
+        }
+    }
+
+    /**
+     * Returns the current limit, before rounding down to a whole number of calls.
+     *
+     * @returns double
+     */
+    double getLimit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    private static boolean isOverload(Throwable cause) {
+        if (cause instanceof CloudBankException)
+            return ((CloudBankException) cause).getHttpStatus() == 429 || HostGuard.isHostFailure(cause);
+        return HostGuard.isHostFailure(cause);
+    }
+
+    private long updateBaseline(int index, long rttNanos, long now) {
+        while (true) {
+            long current = baselines.get(index);
+            long next;
+            if (current == Long.MAX_VALUE || rttNanos <= current)
+                next = rttNanos;
+            else if (now - baselinesSetAt.get(index) > BASELINE_AGE)
+                next = current + (rttNanos - current) / BASELINE_DRIFT;
+            else
+                return current;
+            if (baselines.compareAndSet(index, current, next)) {
+                baselinesSetAt.set(index, now);
+                return next;
+            }
+        }
+    }
+
+    private void increase() {
+        update(limit -> Math.min(maxLimit, limit + 1.0 / limit));
+    }
+
+    private void decrease(long sentAt, long now) {
+        // Every call in flight during a slowdown reports it. Only the first cuts the limit; calls sent before that
+        // cut saw the old limit, and say nothing about the new one.
+        long last = lastDecrease.get();
+        if (sentAt - last < 0 || !lastDecrease.compareAndSet(last, now))
+            return;
+        update(limit -> Math.max(minLimit, limit * BACKOFF));
+    }
+
+    private void update(DoubleUnaryOperator change) {
+        while (true) {
+            long currentBits = limitBits.get();
+            double current = Double.longBitsToDouble(currentBits);
+            double next = change.applyAsDouble(current);
+            if (next == current)
+                return;
+            if (limitBits.compareAndSet(currentBits, Double.doubleToLongBits(next))) {
+                if ((int) next != (int) current) {
+                    // Read the limit again, so a slower thread cannot leave an older value behind for long.
+                    bulkhead.setLimit((int) getLimit());
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Concurrency limit of {} changed from {} to {}", host, (int) current, (int) next);
+                }
+                return;
+            }
+        }
+    }
+}
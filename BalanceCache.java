@@ -0,0 +1,115 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@code BalanceCache} keeps the last {@link BankTotal} of one account for a fixed time to live. While a refresh is
+ * in flight, every caller joins it instead of sending its own request. The cache holds no locks; the current entry
+ * is swapped with compare-and-set.
+ */
+final class BalanceCache {
+
+
+    // Fields
+
+    private final Supplier<CompletableFuture<BankTotal>> loader;
+    private final long ttlNanos;
+    private final AtomicReference<Entry> entry = new AtomicReference<>();
+
+
+    // Constructor
+
+    /**
+     * @param loader sends the show coins request
+     * @param ttl    how long a balance is reused, in milliseconds. With 0, a balance is only shared by the callers
+     *               that ask while it is being fetched.
+     */
+    BalanceCache(Supplier<CompletableFuture<BankTotal>> loader, int ttl) {
+        this.loader = loader;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttl));
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the cached balance if it is still fresh, joins the refresh in flight, or starts a new one.
+     *
+     * @returns {@link CompletableFuture}
+     */
+    CompletableFuture<BankTotal> get() {
+        while (true) {
+            Entry current = entry.get();
+            long now = System.nanoTime();
+            if (current != null && current.isUsable(now, ttlNanos))
+                return share(current.future);
+
+            Entry next = new Entry(now);
+            if (entry.compareAndSet(current, next)) {
+                load(next);
+                return share(next.future);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached balance, so the next {@link #get} sends a new request. A refresh already in flight still
+     * completes for the callers that joined it, but is not cached.
+     */
+    void invalidate() {
+        entry.set(null);
+    }
+
+    private void load(Entry next) {
+        CompletableFuture<BankTotal> call;
+        try {
+            call = loader.get();
+        } catch (RuntimeException e) {
+            call = new CompletableFuture<>();
+            call.completeExceptionally(e);
+        }
+        call.whenComplete((bankTotal, t) -> {
+            if (t != null) {
+                // Failures are never cached; the next caller tries again.
+                entry.compareAndSet(next, null);
+                next.future.completeExceptionally(t);
+            } else {
+                next.future.complete(bankTotal);
+            }
+        });
+    }
+
+    // Each caller gets its own dependent future, so one caller cannot complete or cancel it for the others.
+    private static CompletableFuture<BankTotal> share(CompletableFuture<BankTotal> future) {
+        return future.thenApply(Function.identity());
+    }
+
+
+    private static final class Entry {
+
+        final long startedAt;
+        final CompletableFuture<BankTotal> future = new CompletableFuture<>();
+
+        Entry(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        // The age is counted from when the request was sent, so a cached balance is never older than the TTL.
+        boolean isUsable(long now, long ttlNanos) {
+            if (!future.isDone())
+                return true;
+            return !future.isCompletedExceptionally() && now - startedAt < ttlNanos;
+        }
+    }
+}
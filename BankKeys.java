@@ -23,6 +23,14 @@ package CloudCoinJavaSDK;
 public class BankKeys extends BaseKeys {
 
 
+    // Fields
+
+    /**
+     * Shown in place of the private key wherever the keys are printed or logged.
+     */
+    static final String REDACTED = "********";
+
+
     // Constructors
 
     public BankKeys() {
@@ -34,4 +42,18 @@ public class BankKeys extends BaseKeys {
         this.privatekey = privatekey;
         this.email = email;
     }
+
+
+    // Methods
+
+    /**
+     * Returns the public key and email of the account. The private key is never included, so a {@code BankKeys}
+     * can be logged safely.
+     *
+     * @returns {@link String}
+     */
+    @Override
+    public String toString() {
+        return "BankKeys{publickey=" + publickey + ", privatekey=" + REDACTED + ", email=" + email + "}";
+    }
 }
@@ -0,0 +1,108 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code BulkTransfer} runs one {@link CloudBankUtils#transferAll} call. At most
+ * {@link TransferOptions#maxConcurrency} transfers are in flight; each one that finishes starts the next, so no
+ * thread waits for a free slot.
+ */
+class BulkTransfer {
+
+
+    // Fields
+
+    private final CloudBankUtils cloudBankUtils;
+    private final List<Transfer> transfers;
+    private final TransferOptions options;
+
+    private final TransferResult[] results;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final CompletableFuture<List<TransferResult>> all = new CompletableFuture<>();
+
+
+    // Constructor
+
+    BulkTransfer(CloudBankUtils cloudBankUtils, List<Transfer> transfers, TransferOptions options) {
+        this.cloudBankUtils = cloudBankUtils;
+        this.transfers = new ArrayList<>(transfers);
+        this.options = options;
+        this.results = new TransferResult[this.transfers.size()];
+        this.remaining = new AtomicInteger(results.length);
+    }
+
+
+    // Methods
+
+    /**
+     * Starts the first transfers and returns a future that completes with every result, in the order of the
+     * transfers.
+     *
+     * @returns {@link CompletableFuture}
+     * @throws IllegalArgumentException if any of the transfers is null
+     */
+    CompletableFuture<List<TransferResult>> start() {
+        for (int i = 0; i < transfers.size(); i++) {
+            if (transfers.get(i) == null)
+                throw new IllegalArgumentException("Transfer " + i + " of the list is null");
+        }
+        if (results.length == 0) {
+            all.complete(Collections.emptyList());
+            return all;
+        }
+        for (int i = Math.min(results.length, Math.max(1, options.maxConcurrency)); i > 0; i--)
+            startNext();
+        return all;
+    }
+
+    private void startNext() {
+        int index = next.getAndIncrement();
+        if (index >= results.length)
+            return;
+        Transfer transfer = transfers.get(index);
+        CompletableFuture<TransferResult> call;
+        try {
+            call = cloudBankUtils.transfer(transfer.toPublicURL, transfer.amount, options);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.completedFuture(failed(transfer, e));
+        }
+        // Async, so transfers that fail at once start the next one without growing the stack. A transfer that
+        // throws still gets a result, or the run would never complete.
+        call.whenCompleteAsync((result, t) -> finish(index, t == null ? result : failed(transfer, unwrap(t))));
+    }
+
+    private void finish(int index, TransferResult result) {
+        results[index] = result;
+        try {
+            if (options.listener != null)
+                options.listener.accept(result);
+        } finally {
+            if (remaining.decrementAndGet() == 0)
+                all.complete(Collections.unmodifiableList(Arrays.asList(results)));
+            else
+                startNext();
+        }
+    }
+
+    private static TransferResult failed(Transfer transfer, Throwable error) {
+        return new TransferResult(transfer.toPublicURL, transfer.amount, null, null, error);
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+}
@@ -0,0 +1,148 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * {@code Bulkhead} limits the number of calls in flight to one CloudService host. A call that finds every permit
+ * taken waits in a bounded queue without holding a thread, and is started by the call that releases the next
+ * permit. When the queue is full the call is refused, so one slow host cannot take every connection and callback
+ * of the process.
+ */
+final class Bulkhead {
+
+
+    // Fields
+
+    private static final CompletableFuture<Void> ACQUIRED = CompletableFuture.completedFuture(null);
+
+    private final int maxQueued;
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private volatile int limit;
+
+
+    // Constructor
+
+    /**
+     * @param limit     the largest number of calls in flight; 0 or less for no limit
+     * @param maxQueued the largest number of calls waiting for a permit
+     */
+    Bulkhead(int limit, int maxQueued) {
+        this.limit = limit;
+        this.maxQueued = Math.max(0, maxQueued);
+    }
+
+
+    // Methods
+
+    /**
+     * Takes a permit. The returned future completes once the permit is held, and fails with the exception from
+     * {@code rejected} if the queue is full. Every permit taken must be given back with {@link #release}.
+     *
+     * @param rejected creates the failure returned when the queue is full
+     * @returns {@link CompletableFuture}
+     */
+    CompletableFuture<Void> acquire(Supplier<? extends RuntimeException> rejected) {
+        if (tryAcquire())
+            return ACQUIRED;
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(rejected.get());
+            return failed;
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        // A permit may have been released between tryAcquire and joining the queue.
+        drain();
+        return waiter;
+    }
+
+    /**
+     * Gives back a permit, and passes it to the next waiting call if there is one.
+     */
+    void release() {
+        inUse.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Changes the largest number of calls in flight. Calls already in flight are not affected; waiting calls start
+     * at once if the limit grew.
+     */
+    void setLimit(int limit) {
+        this.limit = limit;
+        drain();
+    }
+
+    /**
+     * Returns the largest number of calls in flight, or 0 or less if there is no limit.
+     *
+     * @returns int
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of calls in flight.
+     *
+     * @returns int
+     */
+    int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * Returns the number of calls waiting for a permit.
+     *
+     * @returns int
+     */
+    int getQueued() {
+        return queued.get();
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inUse.get();
+            int max = limit;
+            if (max > 0 && current >= max)
+                return false;
+            if (inUse.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    private void drain() {
+        // A waiter runs its call when completed, and that call may release straight away. Only one thread drains
+        // at a time, and a release made meanwhile asks it to go round again, so the stack never grows with the queue.
+        if (drainRequests.getAndIncrement() != 0)
+            return;
+        do {
+            while (!waiters.isEmpty() && tryAcquire()) {
+                CompletableFuture<Void> waiter = waiters.poll();
+                if (waiter == null) {
+                    inUse.decrementAndGet();
+                    break;
+                }
+                queued.decrementAndGet();
+                // A waiter that was cancelled gives its permit straight back.
+                if (!waiter.complete(null))
+                    inUse.decrementAndGet();
+            }
+        } while (drainRequests.decrementAndGet() != 0);
+    }
+}
@@ -0,0 +1,238 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@code CallPolicy} decides the deadline of each {@link CloudOperation}, when a failed call is retried, and when a
+ * slow call is hedged with a second request. One policy is set on a {@link CloudBankClientFactory} and applies to
+ * every server call of the accounts it creates.
+ * <p>
+ * <br>
+ * Only idempotent operations, such as {@link CloudOperation#SHOW_COINS} and {@link CloudOperation#GET_RECEIPT}, are
+ * retried after timeouts, I/O errors and server errors, or hedged. Deposits, withdrawals and checks are never
+ * retried once the request may have reached the server. They are only retried after a failure to connect, and only
+ * if {@link Builder#setRetryOnConnectFailure} is turned on.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>CallPolicy policy = CallPolicy.builder()</code>
+ * <br>
+ * <code>        .setTimeout(CloudOperation.SHOW_COINS, 5000)</code>
+ * <br>
+ * <code>        .setHedgeDelay(300)</code>
+ * <br>
+ * <code>        .build();</code>
+ * <br>
+ * <code>CloudBankClientFactory factory = CloudBankClientFactory.builder().setCallPolicy(policy).build();</code>
+ * <p>
+ * <br>
+ * All durations are in milliseconds.
+ */
+public final class CallPolicy {
+
+
+    // Fields
+
+    private final Map<CloudOperation, Integer> timeouts;
+    private final int defaultTimeout;
+    private final int maxAttempts;
+    private final int initialBackoff;
+    private final int maxBackoff;
+    private final int hedgeDelay;
+    private final boolean retryOnConnectFailure;
+
+
+    // Constructor
+
+    private CallPolicy(Builder builder) {
+        timeouts = new EnumMap<>(builder.timeouts);
+        defaultTimeout = builder.defaultTimeout;
+        maxAttempts = Math.max(1, builder.maxAttempts);
+        initialBackoff = Math.max(0, builder.initialBackoff);
+        maxBackoff = Math.max(initialBackoff, builder.maxBackoff);
+        hedgeDelay = Math.max(0, builder.hedgeDelay);
+        retryOnConnectFailure = builder.retryOnConnectFailure;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns a new {@link Builder} with the default settings.
+     *
+     * @returns {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the default policy: three attempts for idempotent calls, no deadline beyond the connection pool's
+     * request timeout, and no hedging.
+     *
+     * @returns {@link CallPolicy}
+     */
+    public static CallPolicy defaults() {
+        return new Builder().build();
+    }
+
+    /**
+     * Returns the deadline of {@code operation}, covering every attempt, or 0 if it has none.
+     *
+     * @returns int
+     */
+    public int getTimeout(CloudOperation operation) {
+        Integer timeout = timeouts.get(operation);
+        return timeout != null ? timeout : defaultTimeout;
+    }
+
+    /**
+     * Returns the largest number of attempts of one call, including the first.
+     *
+     * @returns int
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns how long an idempotent call waits for a response before a hedged request is sent, or 0 if calls of
+     * {@code operation} are not hedged.
+     *
+     * @returns int
+     */
+    public int getHedgeDelay(CloudOperation operation) {
+        return operation.isIdempotent() ? hedgeDelay : 0;
+    }
+
+    /**
+     * Returns true if a call of {@code operation} that failed with {@code failure} may be sent again.
+     *
+     * @returns boolean
+     */
+    boolean isRetryable(CloudOperation operation, Throwable failure) {
+        Throwable cause = unwrap(failure);
+        if (cause instanceof ConnectException)
+            return operation.isIdempotent() || retryOnConnectFailure;
+        if (!operation.isIdempotent())
+            return false;
+        if (cause instanceof CloudBankException) {
+            int status = ((CloudBankException) cause).getHttpStatus();
+            return status >= 500 || status == 429;
+        }
+        return cause instanceof IOException || cause instanceof TimeoutException;
+    }
+
+    /**
+     * Returns how long to wait before attempt number {@code attempt + 1}, using exponential backoff with full jitter.
+     *
+     * @param attempt the number of attempts made so far, from 1
+     * @returns long
+     */
+    long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoff, (long) initialBackoff << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null)
+            t = t.getCause();
+        return t;
+    }
+
+
+    /**
+     * Builder configures a {@link CallPolicy}. Settings that are not changed keep their defaults.
+     */
+    public static class Builder {
+
+        private final Map<CloudOperation, Integer> timeouts = new EnumMap<>(CloudOperation.class);
+        private int defaultTimeout;
+        private int maxAttempts = 3;
+        private int initialBackoff = 100;
+        private int maxBackoff = 2000;
+        private int hedgeDelay;
+        private boolean retryOnConnectFailure;
+
+        private Builder() {
+
+        }
+
+        /**
+         * Sets the deadline of every call of {@code operation}, covering all of its attempts. Use 0 for no deadline
+         * beyond the connection pool's request timeout.
+         */
+        public Builder setTimeout(CloudOperation operation, int timeout) {
+            timeouts.put(operation, timeout);
+            return this;
+        }
+
+        /**
+         * Sets the deadline of operations that have no timeout of their own. The default is 0, for none.
+         */
+        public Builder setDefaultTimeout(int defaultTimeout) {
+            this.defaultTimeout = defaultTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the largest number of attempts of one call, including the first. Use 1 to turn retries off. The
+         * default is 3.
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the backoff before the first retry, which doubles for each later retry up to {@code maxBackoff}. Each
+         * wait is a random time between 0 and the backoff. The defaults are 100 and 2000.
+         */
+        public Builder setBackoff(int initialBackoff, int maxBackoff) {
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * Sets how long an idempotent call waits for a response before a second, hedged request is sent. The first
+         * response to arrive is used and the other request is cancelled. The default is 0, for no hedging.
+         */
+        public Builder setHedgeDelay(int hedgeDelay) {
+            this.hedgeDelay = hedgeDelay;
+            return this;
+        }
+
+        /**
+         * Sets whether deposits, withdrawals and checks are retried when the connection to the server could not be
+         * opened. The request cannot have reached the server in that case. The default is false.
+         */
+        public Builder setRetryOnConnectFailure(boolean retryOnConnectFailure) {
+            this.retryOnConnectFailure = retryOnConnectFailure;
+            return this;
+        }
+
+        /**
+         * Creates the {@link CallPolicy}.
+         *
+         * @returns {@link CallPolicy}
+         */
+        public CallPolicy build() {
+            return new CallPolicy(this);
+        }
+    }
+}
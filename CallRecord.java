@@ -0,0 +1,102 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code CallRecord} describes one finished server call, and is passed to
+ * {@link CloudBankMetrics#onCallFinished}. A call covers every attempt made under the {@link CallPolicy}, including
+ * retries and hedges.
+ */
+public class CallRecord {
+
+
+    // Fields
+
+    /**
+     * The kind of call.
+     */
+    public final CloudOperation operation;
+
+    /**
+     * The CloudService host the call was for.
+     */
+    public final String host;
+
+    /**
+     * The time from the start of the call to its outcome, in nanoseconds.
+     */
+    public final long latencyNanos;
+
+    /**
+     * The number of requests sent. It is 0 if the call was refused before anything was sent.
+     */
+    public final int attempts;
+
+    /**
+     * The number of request body bytes written, summed over every attempt.
+     */
+    public final long bytesSent;
+
+    /**
+     * The number of response body bytes received, summed over every attempt.
+     */
+    public final long bytesReceived;
+
+    /**
+     * Why the call failed, or null if it succeeded.
+     */
+    public final Throwable failure;
+
+    /**
+     * A short name for the failure, suitable as a metric tag, or null if the call succeeded. A refusal from the
+     * server is named by its {@link FailResponse#status}; other failures are named by their HTTP status, by
+     * {@link CallRejectedException.Reason}, or by their exception class.
+     */
+    public final String errorType;
+
+
+    // Constructor
+
+    public CallRecord(CloudOperation operation, String host, long latencyNanos, int attempts, long bytesSent,
+                      long bytesReceived, Throwable failure) {
+        this.operation = operation;
+        this.host = host;
+        this.latencyNanos = latencyNanos;
+        this.attempts = attempts;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.failure = failure;
+        this.errorType = errorType(failure);
+    }
+
+
+    // Methods
+
+    /**
+     * Returns true if the call succeeded.
+     *
+     * @returns boolean
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    private static String errorType(Throwable failure) {
+        if (failure == null)
+            return null;
+        if (failure instanceof CloudBankException) {
+            CloudBankException refusal = (CloudBankException) failure;
+            if (refusal.getFailResponse() != null && refusal.getFailResponse().status != null)
+                return refusal.getFailResponse().status;
+            return "HTTP " + refusal.getHttpStatus();
+        }
+        if (failure instanceof CallRejectedException)
+            return ((CallRejectedException) failure).getReason().name();
+        return failure.getClass().getSimpleName();
+    }
+}
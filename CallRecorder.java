@@ -0,0 +1,182 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.handler.ProgressAsyncHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code CallRecorder} measures one server call for the factory's {@link CloudBankMetrics} and for JDK Flight
+ * Recorder. Each attempt's handler is wrapped with {@link #meter}, which counts the bytes written and received
+ * without changing what the handler sees. Each finished call is logged at debug level, with its operation and host
+ * in the MDC.
+ */
+final class CallRecorder {
+
+
+    // Fields
+
+    private static final Logger LOG = LoggerFactory.getLogger(CallRecorder.class);
+
+    private final CloudBankMetrics metrics;
+    private final CloudOperation operation;
+    private final String host;
+    private final long startedAt = System.nanoTime();
+    private final CloudCallEvent event = new CloudCallEvent();
+
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+
+    // Constructor
+
+    /**
+     * Starts measuring a call.
+     *
+     * @param metrics   told when the call starts and finishes
+     * @param operation the kind of call
+     * @param host      the CloudService host the call is for
+     */
+    CallRecorder(CloudBankMetrics metrics, CloudOperation operation, String host) {
+        this.metrics = metrics;
+        this.operation = operation;
+        this.host = host;
+        event.begin();
+        metrics.onCallStarted(operation, host);
+    }
+
+
+    // Methods
+
+    /**
+     * Wraps the handler of one attempt so that its traffic is counted.
+     *
+     * @returns {@link AsyncHandler}
+     */
+    <T> AsyncHandler<T> meter(AsyncHandler<T> handler) {
+        attempts.incrementAndGet();
+        return new MeteredHandler<>(handler);
+    }
+
+    /**
+     * Finishes the measurement when {@code call} completes, and returns {@code call}.
+     *
+     * @returns {@link CompletableFuture}
+     */
+    <T> CompletableFuture<T> record(CompletableFuture<T> call) {
+        call.whenComplete((result, t) -> finish(t));
+        return call;
+    }
+
+    /**
+     * Finishes the measurement. Only the first outcome of a call is recorded.
+     *
+     * @param failure why the call failed, or null if it succeeded
+     */
+    @SuppressWarnings("try")
+    void finish(Throwable failure) {
+        if (!finished.compareAndSet(false, true))
+            return;
+        CallRecord record = new CallRecord(operation, host, System.nanoTime() - startedAt, attempts.get(),
+                bytesSent.get(), bytesReceived.get(), failure == null ? null : CallPolicy.unwrap(failure));
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation.endpoint();
+            event.host = host;
+            event.attempts = record.attempts;
+            event.bytesSent = record.bytesSent;
+            event.bytesReceived = record.bytesReceived;
+            event.error = record.errorType;
+            event.commit();
+        }
+        metrics.onCallFinished(record);
+        if (LOG.isDebugEnabled()) {
+            try (LogContext context = LogContext.of(operation, host, null)) {
+                long millis = TimeUnit.NANOSECONDS.toMillis(record.latencyNanos);
+                if (record.isSuccess())
+                    LOG.debug("Call succeeded in {} ms after {} attempt(s)", millis, record.attempts);
+                else
+                    LOG.debug("Call failed in {} ms after {} attempt(s): {}",
+                            millis, record.attempts, record.errorType);
+            }
+        }
+    }
+
+
+    /**
+     * MeteredHandler passes every callback to the handler of an attempt, counting the request body bytes that
+     * AsyncHttpClient reports as written and the response body bytes received.
+     */
+    private final class MeteredHandler<T> implements ProgressAsyncHandler<T> {
+
+        private final AsyncHandler<T> handler;
+
+        MeteredHandler(AsyncHandler<T> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public State onHeadersWritten() {
+            return handler instanceof ProgressAsyncHandler
+                    ? ((ProgressAsyncHandler<T>) handler).onHeadersWritten() : State.CONTINUE;
+        }
+
+        @Override
+        public State onContentWritten() {
+            return handler instanceof ProgressAsyncHandler
+                    ? ((ProgressAsyncHandler<T>) handler).onContentWritten() : State.CONTINUE;
+        }
+
+        @Override
+        public State onContentWriteProgress(long amount, long current, long total) {
+            bytesSent.addAndGet(amount);
+            return handler instanceof ProgressAsyncHandler
+                    ? ((ProgressAsyncHandler<T>) handler).onContentWriteProgress(amount, current, total)
+                    : State.CONTINUE;
+        }
+
+        @Override
+        public State onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+            return handler.onStatusReceived(responseStatus);
+        }
+
+        @Override
+        public State onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+            return handler.onHeadersReceived(headers);
+        }
+
+        @Override
+        public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+            bytesReceived.addAndGet(bodyPart.length());
+            return handler.onBodyPartReceived(bodyPart);
+        }
+
+        @Override
+        public T onCompleted() throws Exception {
+            return handler.onCompleted();
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+            handler.onThrowable(t);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code CallRejectedException} is thrown when a server call is refused by the SDK itself, before any request is
+ * sent, to protect a CloudService host that is unhealthy, already busy or over its rate limit. A rejected call is
+ * never retried.
+ */
+public class CallRejectedException extends RuntimeException {
+
+
+    // Fields
+
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+    private final Reason reason;
+
+
+    // Constructor
+
+    /**
+     * @param host   the CloudService host the call was for
+     * @param reason why the call was refused
+     */
+    public CallRejectedException(String host, Reason reason) {
+        super(reason.describe(host));
+        this.host = host;
+        this.reason = reason;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the CloudService host the call was for.
+     *
+     * @returns {@link String}
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Returns why the call was refused.
+     *
+     * @returns {@link Reason}
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+
+    /**
+     * Reason is why a call was refused.
+     */
+    public enum Reason {
+
+        /**
+         * The circuit breaker of the host is open.
+         */
+        CIRCUIT_OPEN("circuit breaker is open"),
+
+        /**
+         * The host already has the largest number of calls in flight and waiting.
+         */
+        BULKHEAD_FULL("too many calls in flight"),
+
+        /**
+         * The host or endpoint is over its rate limit for longer than a call may wait.
+         */
+        RATE_LIMITED("rate limit reached");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        String describe(String host) {
+            return "Call to " + host + " rejected: " + description;
+        }
+    }
+}
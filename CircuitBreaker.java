@@ -0,0 +1,144 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@code CircuitBreaker} stops calls to one CloudService host after it fails {@code failureThreshold} calls in a
+ * row. While open, calls fail straight away; after {@code openDuration} a single trial call decides whether the
+ * breaker closes or opens again. State is held in atomics, so recording an outcome never blocks.
+ */
+final class CircuitBreaker {
+
+
+    // Fields
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String host;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final List<CircuitBreakerListener> listeners;
+
+    private final AtomicReference<CircuitState> state = new AtomicReference<>(CircuitState.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+    private volatile long openedAt;
+
+
+    // Constructor
+
+    /**
+     * @param host             the CloudService host, used in listener calls
+     * @param failureThreshold the number of failures in a row that opens the breaker; 0 or less never opens it
+     * @param openDuration     how long the breaker stays open before a trial call, in milliseconds
+     * @param listeners        told of every state change
+     */
+    CircuitBreaker(String host, int failureThreshold, int openDuration, List<CircuitBreakerListener> listeners) {
+        this.host = host;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openDuration);
+        this.listeners = listeners;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns true if a call may be sent now. In the half-open state only one trial call is allowed at a time, and
+     * its outcome must be recorded with {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}.
+     *
+     * @returns boolean
+     */
+    boolean allowRequest() {
+        while (true) {
+            CircuitState current = state.get();
+            switch (current) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.nanoTime() - openedAt < openNanos)
+                        return false;
+                    transition(CircuitState.OPEN, CircuitState.HALF_OPEN);
+                    break;
+                default:
+                    return trialInFlight.compareAndSet(false, true);
+            }
+        }
+    }
+
+    /**
+     * Records a call that reached the host and got an answer, even a refusal.
+     */
+    void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.get() == CircuitState.HALF_OPEN && transition(CircuitState.HALF_OPEN, CircuitState.CLOSED))
+            trialInFlight.set(false);
+    }
+
+    /**
+     * Records a call that failed because the host is unreachable, slow or erroring.
+     */
+    void onFailure() {
+        if (state.get() == CircuitState.HALF_OPEN) {
+            open(CircuitState.HALF_OPEN);
+            trialInFlight.set(false);
+        } else if (failureThreshold > 0 && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(CircuitState.CLOSED);
+        }
+    }
+
+    /**
+     * Records a call whose outcome says nothing about the host, such as a cancelled hedge.
+     */
+    void onIgnored() {
+        if (state.get() == CircuitState.HALF_OPEN)
+            trialInFlight.set(false);
+    }
+
+    /**
+     * Returns the current state.
+     *
+     * @returns {@link CircuitState}
+     */
+    CircuitState getState() {
+        return state.get();
+    }
+
+    private void open(CircuitState from) {
+        openedAt = System.nanoTime();
+        if (transition(from, CircuitState.OPEN))
+            consecutiveFailures.set(0);
+    }
+
+    @SuppressWarnings("try")
+    private boolean transition(CircuitState from, CircuitState to) {
+        if (!state.compareAndSet(from, to))
+            return false;
+        if (to == CircuitState.OPEN ? LOG.isWarnEnabled() : LOG.isInfoEnabled()) {
+            try (LogContext context = LogContext.of(null, host, null)) {
+                if (to == CircuitState.OPEN)
+                    LOG.warn("Circuit breaker opened after {}", from == CircuitState.HALF_OPEN
+                            ? "a failed trial call" : failureThreshold + " failures in a row");
+                else
+                    LOG.info("Circuit breaker moved from {} to {}", from, to);
+            }
+        }
+        for (CircuitBreakerListener listener : listeners)
+            listener.onStateChange(host, from, to);
+        return true;
+    }
+}
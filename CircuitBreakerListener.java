@@ -0,0 +1,25 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code CircuitBreakerListener} is told when the circuit breaker of a CloudService host changes state. Listeners
+ * are added with {@link CloudBankClientFactory.Builder#addCircuitBreakerListener}, and are called on the thread
+ * that caused the change, so they should return quickly.
+ */
+public interface CircuitBreakerListener {
+
+    /**
+     * Called after the breaker of {@code host} moved from {@code from} to {@code to}.
+     *
+     * @param host the CloudService host, such as the public key of an account
+     * @param from the previous state
+     * @param to   the new state
+     */
+    void onStateChange(String host, CircuitState from, CircuitState to);
+}
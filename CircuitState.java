@@ -0,0 +1,31 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code CircuitState} is the state of the circuit breaker of one CloudService host.
+ */
+public enum CircuitState {
+
+    /**
+     * The host is healthy and calls are sent to it.
+     */
+    CLOSED,
+
+    /**
+     * The host failed too many calls in a row. Calls fail straight away with a {@link CallRejectedException} until
+     * the breaker's open duration has passed.
+     */
+    OPEN,
+
+    /**
+     * The open duration has passed, and a single trial call is sent. If it succeeds the breaker closes, otherwise
+     * it opens again.
+     */
+    HALF_OPEN
+}
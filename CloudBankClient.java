@@ -0,0 +1,297 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * CloudBankClient is a blocking view of a {@link CloudBankUtils}, for code that runs each task on its own thread.
+ * Each method starts the matching asynchronous call and waits for its typed result, so the result is returned
+ * directly instead of through a {@link CompletableFuture} or the getters of CloudBankUtils.
+ * <p>
+ * <br>
+ * CloudBankClient is meant for virtual threads. A waiting call parks its thread without holding a monitor, so the
+ * virtual thread leaves its carrier thread, and the request itself runs on the factory's shared event loop. A few
+ * carrier threads can therefore wait on any number of calls. Calls to one host are still limited by the factory's
+ * bulkhead: to have many thousands of calls waiting on the same host, raise its queue with
+ * {@link CloudBankClientFactory.Builder#setMaxConcurrentCallsPerHost}.
+ * <p>
+ * <br>
+ * A refused call throws the {@link CloudBankException} or {@link CallRejectedException} that the future failed
+ * with. A network failure throws an {@link UncheckedIOException}, and any other failure, such as a call that
+ * passed its deadline, a {@link CompletionException} holding the cause.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>CloudBankClient client = factory.createClient(bankKeys);</code>
+ * <br>
+ * <code>try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {</code>
+ * <br>
+ * <code>executor.submit(() -> client.deposit(stackFile).receipt);</code>
+ * <br>
+ * <code>}</code>
+ */
+public class CloudBankClient implements Closeable {
+
+
+    // Fields
+
+    private final CloudBankUtils cloudBankUtils;
+
+
+    // Constructor
+
+    /**
+     * Creates a blocking view of {@code cloudBankUtils}. Both objects can be used at the same time.
+     *
+     * @param cloudBankUtils the {@link CloudBankUtils} that makes the calls
+     */
+    public CloudBankClient(CloudBankUtils cloudBankUtils) {
+        this.cloudBankUtils = cloudBankUtils;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the balance of the account. Like {@link CloudBankUtils#getBalance}, callers that ask at the same time
+     * share one request, and a recent balance is reused.
+     *
+     * @returns {@link BankTotal}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public BankTotal balance() throws InterruptedException {
+        return await(cloudBankUtils.getBalance());
+    }
+
+    /**
+     * Asks the server for the balance of the account, without using the cached balance.
+     *
+     * @returns {@link BankTotal}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public BankTotal refreshBalance() throws InterruptedException {
+        return await(cloudBankUtils.getBankTotal());
+    }
+
+    /**
+     * Streams a CloudCoin stack file to this account.
+     *
+     * @param stackFile the CloudCoin stack file being deposited
+     * @returns {@link DepositResponse}, holding the receipt number of the deposit
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public DepositResponse deposit(Path stackFile) throws InterruptedException {
+        return await(cloudBankUtils.depositStack(stackFile));
+    }
+
+    /**
+     * Streams a CloudCoin stack file to another CloudService account.
+     *
+     * @param stackFile   the CloudCoin stack file being deposited
+     * @param toPublicURL the url of the CloudService server the CloudCoins are being sent to. Do not include
+     *                    "https://".
+     * @returns {@link DepositResponse}, holding the receipt number of the deposit
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public DepositResponse deposit(Path stackFile, String toPublicURL) throws InterruptedException {
+        return await(cloudBankUtils.depositStack(stackFile, toPublicURL));
+    }
+
+    /**
+     * Deposits a CloudCoin stack held in memory to a CloudService account.
+     *
+     * @param stack       the CloudCoin stack being deposited
+     * @param toPublicURL the url of the CloudService server the CloudCoins are being sent to. Do not include
+     *                    "https://".
+     * @returns {@link DepositResponse}, holding the receipt number of the deposit
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public DepositResponse deposit(String stack, String toPublicURL) throws InterruptedException {
+        return await(cloudBankUtils.depositStack(stack, toPublicURL));
+    }
+
+    /**
+     * Deposits every CloudCoin stack file in {@code directory}, as {@link CloudBankUtils#depositDirectory} does.
+     *
+     * @param directory the directory holding the CloudCoin stack files
+     * @param options   the {@link DepositOptions} of this run
+     * @returns {@link DepositSummary}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public DepositSummary depositDirectory(Path directory, DepositOptions options) throws InterruptedException {
+        return await(cloudBankUtils.depositDirectory(directory, options));
+    }
+
+    /**
+     * Withdraws CloudCoins from this account.
+     *
+     * @param amount the amount of CloudCoins to withdraw
+     * @returns the withdrawn CloudCoin stack
+     * @throws InterruptedException if the thread is interrupted while waiting. The withdrawal may still complete;
+     *                              its stack is then lost, so prefer {@link #withdrawToFile} for large amounts.
+     */
+    public String withdraw(int amount) throws InterruptedException {
+        return await(cloudBankUtils.withdrawStack(amount));
+    }
+
+    /**
+     * Withdraws CloudCoins from this account and saves the stack to a new file in {@code directory}.
+     *
+     * @param amount    the amount of CloudCoins to withdraw
+     * @param directory the directory the stack file is saved to
+     * @returns the path of the saved stack file
+     * @throws InterruptedException if the thread is interrupted while waiting. The stack file is still written.
+     */
+    public Path withdrawToFile(int amount, Path directory) throws InterruptedException {
+        return await(cloudBankUtils.withdrawStackToFile(amount, directory));
+    }
+
+    /**
+     * Withdraws the authentic CloudCoins of a deposit.
+     *
+     * @param receiptNumber the receipt number of the deposit
+     * @returns the withdrawn CloudCoin stack
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public String withdrawReceipt(String receiptNumber) throws InterruptedException {
+        return await(cloudBankUtils.withdrawReceipt(receiptNumber));
+    }
+
+    /**
+     * Retrieves the receipt of a deposit, with the detail of every CloudCoin.
+     *
+     * @param receiptNumber the receipt number of the deposit
+     * @returns {@link Receipt}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Receipt receipt(String receiptNumber) throws InterruptedException {
+        return await(cloudBankUtils.getReceipt(receiptNumber));
+    }
+
+    /**
+     * Retrieves the totals of a deposit's receipt, without keeping the detail of each CloudCoin.
+     *
+     * @param receiptNumber the receipt number of the deposit
+     * @returns {@link ReceiptSummary}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public ReceiptSummary receiptSummary(String receiptNumber) throws InterruptedException {
+        return await(cloudBankUtils.getReceiptSummary(receiptNumber));
+    }
+
+    /**
+     * Transfers CloudCoins from this account to another account, using the default {@link TransferOptions}.
+     *
+     * @param toPublicURL the url of the CloudService server the CloudCoins are being sent to. Do not include
+     *                    "https://".
+     * @param amount      the amount of CloudCoins to be transferred
+     * @returns {@link TransferResult}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public TransferResult transfer(String toPublicURL, int amount) throws InterruptedException {
+        return await(cloudBankUtils.transfer(toPublicURL, amount));
+    }
+
+    /**
+     * Transfers CloudCoins from this account to another account.
+     *
+     * @param toPublicURL the url of the CloudService server the CloudCoins are being sent to. Do not include
+     *                    "https://".
+     * @param amount      the amount of CloudCoins to be transferred
+     * @param options     the {@link TransferOptions} of the transfer
+     * @returns {@link TransferResult}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public TransferResult transfer(String toPublicURL, int amount, TransferOptions options)
+            throws InterruptedException {
+        return await(cloudBankUtils.transfer(toPublicURL, amount, options));
+    }
+
+    /**
+     * Creates a digital check containing CloudCoins.
+     *
+     * @param amountToSend the amount of CloudCoins to be transferred
+     * @param payTo        the name of the recipient
+     * @param signedBy     the name of the sender
+     * @param memo         a short note describing the payment
+     * @returns {@link DepositResponse}, whose message holds the url of the check
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public DepositResponse createCheck(int amountToSend, String payTo, String signedBy, String memo)
+            throws InterruptedException {
+        return await(cloudBankUtils.createCheck(amountToSend, payTo, signedBy, memo));
+    }
+
+    /**
+     * Cashes a CloudCoin check.
+     *
+     * @param checkId the ID of the check
+     * @returns the CloudCoin stack of the check
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public String redeemCheck(String checkId) throws InterruptedException {
+        return await(cloudBankUtils.redeemCheck(checkId));
+    }
+
+    /**
+     * Drops the cached balance, so the next {@link #balance} asks the server.
+     */
+    public void invalidateBalance() {
+        cloudBankUtils.invalidateBalance();
+    }
+
+    /**
+     * Closes the underlying {@link CloudBankUtils}. A client created by a {@link CloudBankClientFactory} leaves the
+     * shared pool open.
+     *
+     * @throws IOException if the connection pool fails to shut down
+     */
+    @Override
+    public void close() throws IOException {
+        cloudBankUtils.close();
+    }
+
+    /**
+     * Waits for {@code future} and returns its result. {@link CompletableFuture#get} parks the thread without
+     * holding a monitor, so a waiting virtual thread does not pin its carrier. Interrupting the thread stops the
+     * wait but not the call, which may still change the account.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            if (cause instanceof IOException)
+                throw new UncheckedIOException((IOException) cause);
+            throw new CompletionException(cause);
+        }
+    }
+
+
+    // Getters
+
+    /**
+     * Returns the {@link CloudBankUtils} that makes this client's calls, for the calls that have no blocking form.
+     *
+     * @returns {@link CloudBankUtils}
+     */
+    public CloudBankUtils getCloudBankUtils() {
+        return cloudBankUtils;
+    }
+}
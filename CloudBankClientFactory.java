@@ -0,0 +1,563 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.asynchttpclient.Dsl.asyncHttpClient;
+import static org.asynchttpclient.Dsl.config;
+
+/**
+ * {@code CloudBankClientFactory} owns a single pooled {@link AsyncHttpClient} that is shared by every
+ * {@link CloudBankUtils} it creates. Sharing the client means many accounts reuse one Netty event loop, one
+ * connection pool and one TLS session cache instead of each account creating its own.
+ * <p>
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * Create one factory per application, then create a {@link CloudBankUtils} for each account. Close the factory
+ * when the application shuts down.
+ * <p>
+ * <br>
+ * <code>CloudBankClientFactory factory = CloudBankClientFactory.builder()</code>
+ * <br>
+ * <code>        .setMaxConnectionsPerHost(64)</code>
+ * <br>
+ * <code>        .setRequestTimeout(30000)</code>
+ * <br>
+ * <code>        .build();</code>
+ * <br>
+ * <code>CloudBankUtils cloudBankUtils = factory.create(bankKeys);</code>
+ * <p>
+ * <br>
+ * Connections are kept alive and pooled over HTTP/1.1; AsyncHttpClient does not negotiate HTTP/2.
+ */
+public class CloudBankClientFactory implements Closeable {
+
+
+    // Fields
+
+    static final int DEFAULT_MAX_RESPONSE_BODY_SIZE = 16 * 1024 * 1024;
+
+    private final AsyncHttpClient client;
+    private final int maxResponseBodySize;
+    private final int balanceCacheTtl;
+    private final RequestCoalescer coalescer;
+    private final CallPolicy callPolicy;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentHashMap<String, HostGuard> hostGuards = new ConcurrentHashMap<>();
+    private final int failureThreshold;
+    private final int openDuration;
+    private final int maxConcurrentCallsPerHost;
+    private final int maxQueuedCallsPerHost;
+    private final int minConcurrencyLimit;
+    private final int maxConcurrencyLimit;
+    private final RateLimiter.Rate hostRate;
+    private final Map<CloudOperation, RateLimiter.Rate> operationRates;
+    private final int maxRateLimitWait;
+    private final List<CircuitBreakerListener> circuitBreakerListeners;
+    private final CloudBankMetrics metrics;
+    private final String scheme;
+
+
+    // Constructors
+
+    /**
+     * Constructs a CloudBankClientFactory with the default AsyncHttpClient configuration.
+     */
+    public CloudBankClientFactory() {
+        this(new Builder());
+    }
+
+    private CloudBankClientFactory(Builder builder) {
+        client = asyncHttpClient(builder.config);
+        maxResponseBodySize = builder.maxResponseBodySize;
+        balanceCacheTtl = builder.balanceCacheTtl;
+        coalescer = builder.coalesceRequests ? new RequestCoalescer() : null;
+        callPolicy = builder.callPolicy;
+        failureThreshold = builder.failureThreshold;
+        openDuration = builder.openDuration;
+        maxConcurrentCallsPerHost = builder.maxConcurrentCallsPerHost;
+        maxQueuedCallsPerHost = builder.maxQueuedCallsPerHost;
+        minConcurrencyLimit = builder.minConcurrencyLimit;
+        maxConcurrencyLimit = builder.maxConcurrencyLimit;
+        hostRate = builder.hostRate;
+        operationRates = new EnumMap<>(builder.operationRates);
+        maxRateLimitWait = builder.maxRateLimitWait;
+        circuitBreakerListeners = new CopyOnWriteArrayList<>(builder.circuitBreakerListeners);
+        metrics = builder.metrics;
+        scheme = builder.scheme;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CloudBankClient-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    // Methods
+
+    /**
+     * Returns a new {@link Builder} for configuring the shared connection pool.
+     *
+     * @returns {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a {@link CloudBankUtils} for an account that uses this factory's shared connection pool.
+     * Closing the returned object does not close the pool; close the factory instead.
+     *
+     * @param bankKeys the {@link BankKeys} object containing the encryption keys for the account.
+     * @returns {@link CloudBankUtils}
+     */
+    public CloudBankUtils create(BankKeys bankKeys) {
+        return new CloudBankUtils(bankKeys, this, false);
+    }
+
+    /**
+     * Creates a blocking {@link CloudBankClient} for an account that uses this factory's shared connection pool,
+     * for code that runs on virtual threads. Closing the returned object does not close the pool.
+     *
+     * @param bankKeys the {@link BankKeys} object containing the encryption keys for the account.
+     * @returns {@link CloudBankClient}
+     */
+    public CloudBankClient createClient(BankKeys bankKeys) {
+        return new CloudBankClient(create(bankKeys));
+    }
+
+    /**
+     * Returns the shared client used by every {@link CloudBankUtils} created by this factory.
+     *
+     * @returns {@link AsyncHttpClient}
+     */
+    AsyncHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the largest response body, in bytes, that a server call accepts.
+     *
+     * @returns int
+     */
+    int getMaxResponseBodySize() {
+        return maxResponseBodySize;
+    }
+
+    /**
+     * Returns how long, in milliseconds, an account balance is reused by {@link CloudBankUtils#getBalance}.
+     *
+     * @returns int
+     */
+    int getBalanceCacheTtl() {
+        return balanceCacheTtl;
+    }
+
+    /**
+     * Returns the {@link RequestCoalescer} shared by every {@link CloudBankUtils} created by this factory, or null if
+     * identical calls are not coalesced.
+     *
+     * @returns {@link RequestCoalescer}
+     */
+    RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * Returns the {@link CallPolicy} of every server call made through this factory.
+     *
+     * @returns {@link CallPolicy}
+     */
+    public CallPolicy getCallPolicy() {
+        return callPolicy;
+    }
+
+    /**
+     * Returns the timer that runs retry backoffs and hedged requests.
+     *
+     * @returns {@link ScheduledExecutorService}
+     */
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the circuit breaker and bulkhead of {@code host}, creating them on first use.
+     *
+     * @returns {@link HostGuard}
+     */
+    HostGuard getHostGuard(String host) {
+        return hostGuards.computeIfAbsent(host, key -> {
+            Bulkhead bulkhead = new Bulkhead(maxConcurrentCallsPerHost, maxQueuedCallsPerHost);
+            AdaptiveLimit adaptiveLimit = maxConcurrencyLimit <= 0 ? null
+                    : new AdaptiveLimit(key, bulkhead, minConcurrencyLimit, maxConcurrencyLimit,
+                    maxConcurrentCallsPerHost > 0 ? maxConcurrentCallsPerHost : maxConcurrencyLimit);
+            return new HostGuard(key, new CircuitBreaker(key, failureThreshold, openDuration, circuitBreakerListeners),
+                    bulkhead, adaptiveLimit, new RateLimiter(key, hostRate, operationRates, maxRateLimitWait));
+        });
+    }
+
+    /**
+     * Returns the largest number of calls that may be in flight to {@code host} right now. It only changes when
+     * adaptive concurrency is on; see {@link Builder#setAdaptiveConcurrency}.
+     *
+     * @param host the CloudService host, such as the public key of an account
+     * @returns int, 0 or less for no limit
+     */
+    public int getConcurrencyLimit(String host) {
+        HostGuard guard = hostGuards.get(host);
+        return guard == null ? maxConcurrentCallsPerHost : guard.getBulkhead().getLimit();
+    }
+
+    /**
+     * Returns the state of the circuit breaker of {@code host}. A host that has not been called yet is
+     * {@link CircuitState#CLOSED}.
+     *
+     * @param host the CloudService host, such as the public key of an account
+     * @returns {@link CircuitState}
+     */
+    public CircuitState getCircuitState(String host) {
+        HostGuard guard = hostGuards.get(host);
+        return guard == null ? CircuitState.CLOSED : guard.getBreaker().getState();
+    }
+
+    /**
+     * Returns the rate limit of {@code host} right now, in calls per second. It is lower than the configured rate
+     * while the host is throttling calls; see {@link Builder#setRateLimit(double, int)}.
+     *
+     * @param host the CloudService host, such as the public key of an account
+     * @returns double, or {@link Double#POSITIVE_INFINITY} if calls to the host are not limited
+     */
+    public double getRateLimit(String host) {
+        HostGuard guard = hostGuards.get(host);
+        if (guard != null)
+            return guard.getRateLimiter().getRate();
+        return hostRate == null || hostRate.callsPerSecond <= 0 ? Double.POSITIVE_INFINITY : hostRate.callsPerSecond;
+    }
+
+    /**
+     * Returns the {@link CloudBankMetrics} told about every server call made through this factory.
+     *
+     * @returns {@link CloudBankMetrics}
+     */
+    public CloudBankMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the URL scheme of every server call, {@code https} unless changed for a local test server.
+     *
+     * @returns {@link String}
+     */
+    String getScheme() {
+        return scheme;
+    }
+
+    /**
+     * Returns true if {@link #close} has been called.
+     *
+     * @returns boolean
+     */
+    public boolean isClosed() {
+        return client.isClosed();
+    }
+
+    /**
+     * Closes the shared connection pool and releases its threads. Every {@link CloudBankUtils} created by this
+     * factory can no longer be used.
+     *
+     * @throws IOException if the client fails to shut down
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        client.close();
+    }
+
+
+    /**
+     * Builder configures the connection pool, keep-alive, TLS session resumption and timeouts of a
+     * {@link CloudBankClientFactory}. Settings that are not changed keep the AsyncHttpClient defaults.
+     * All durations are in milliseconds.
+     */
+    public static class Builder {
+
+        // AsyncHttpClient would otherwise replay a request, POSTs included, whose pooled connection closes under
+        // it. Every attempt must go through the CallPolicy and the host's guard, so the client never retries.
+        private final DefaultAsyncHttpClientConfig.Builder config = config()
+                .setThreadPoolName("CloudBankClient")
+                .setMaxRequestRetry(0);
+        private int maxResponseBodySize = DEFAULT_MAX_RESPONSE_BODY_SIZE;
+        private int balanceCacheTtl;
+        private boolean coalesceRequests = true;
+        private CallPolicy callPolicy = CallPolicy.defaults();
+        private int failureThreshold = 5;
+        private int openDuration = 30000;
+        private int maxConcurrentCallsPerHost = 64;
+        private int maxQueuedCallsPerHost = 1024;
+        private int minConcurrencyLimit;
+        private int maxConcurrencyLimit;
+        private RateLimiter.Rate hostRate;
+        private final Map<CloudOperation, RateLimiter.Rate> operationRates = new EnumMap<>(CloudOperation.class);
+        private int maxRateLimitWait = 30000;
+        private final List<CircuitBreakerListener> circuitBreakerListeners = new ArrayList<>();
+        private CloudBankMetrics metrics = CloudBankMetrics.NONE;
+        private String scheme = "https";
+
+        private Builder() {
+
+        }
+
+        /**
+         * Sets the maximum number of connections across all hosts. Use -1 for no limit.
+         */
+        public Builder setMaxConnections(int maxConnections) {
+            config.setMaxConnections(maxConnections);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of connections to a single CloudService host. Use -1 for no limit.
+         */
+        public Builder setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            config.setMaxConnectionsPerHost(maxConnectionsPerHost);
+            return this;
+        }
+
+        /**
+         * Sets whether connections are kept alive and returned to the pool after each call.
+         */
+        public Builder setKeepAlive(boolean keepAlive) {
+            config.setKeepAlive(keepAlive);
+            return this;
+        }
+
+        /**
+         * Sets how long an idle connection stays in the pool before it is closed.
+         */
+        public Builder setPooledConnectionIdleTimeout(int pooledConnectionIdleTimeout) {
+            config.setPooledConnectionIdleTimeout(pooledConnectionIdleTimeout);
+            return this;
+        }
+
+        /**
+         * Sets the maximum lifetime of a pooled connection. Use -1 for no limit.
+         */
+        public Builder setConnectionTtl(int connectionTtl) {
+            config.setConnectionTtl(connectionTtl);
+            return this;
+        }
+
+        /**
+         * Sets the maximum time to open a connection.
+         */
+        public Builder setConnectTimeout(int connectTimeout) {
+            config.setConnectTimeout(connectTimeout);
+            return this;
+        }
+
+        /**
+         * Sets the maximum time a connection can be idle while waiting for a response.
+         */
+        public Builder setReadTimeout(int readTimeout) {
+            config.setReadTimeout(readTimeout);
+            return this;
+        }
+
+        /**
+         * Sets the maximum time for a whole server call, from sending the request to receiving the last byte.
+         */
+        public Builder setRequestTimeout(int requestTimeout) {
+            config.setRequestTimeout(requestTimeout);
+            return this;
+        }
+
+        /**
+         * Sets how many TLS sessions are cached for resumption. Resumed sessions skip the full TLS handshake when
+         * a new connection is opened to a host that was already visited.
+         */
+        public Builder setSslSessionCacheSize(int sslSessionCacheSize) {
+            config.setSslSessionCacheSize(sslSessionCacheSize);
+            return this;
+        }
+
+        /**
+         * Sets how long a cached TLS session can be resumed, in seconds.
+         */
+        public Builder setSslSessionTimeout(int sslSessionTimeout) {
+            config.setSslSessionTimeout(sslSessionTimeout);
+            return this;
+        }
+
+        /**
+         * Sets the number of Netty I/O threads shared by every account.
+         */
+        public Builder setIoThreadsCount(int ioThreadsCount) {
+            config.setIoThreadsCount(ioThreadsCount);
+            return this;
+        }
+
+        /**
+         * Sets the largest response body, in bytes, that a server call accepts. Larger responses are aborted and
+         * the call fails with a {@link CloudBankException}. Stacks written with
+         * {@link CloudBankUtils#withdrawStackToFile} are not limited. The default is 16 MB.
+         */
+        public Builder setMaxResponseBodySize(int maxResponseBodySize) {
+            this.maxResponseBodySize = maxResponseBodySize;
+            return this;
+        }
+
+        /**
+         * Sets how long an account balance read by {@link CloudBankUtils#getBalance} and
+         * {@link CloudBankUtils#showCoins} is reused before the server is asked again. Deposits, withdrawals and
+         * checks through the same {@link CloudBankUtils} drop the cached balance straight away. The default is 0,
+         * which only shares one request between callers that ask at the same time.
+         */
+        public Builder setBalanceCacheTtl(int balanceCacheTtl) {
+            this.balanceCacheTtl = balanceCacheTtl;
+            return this;
+        }
+
+        /**
+         * Sets whether identical read-only calls that are in flight at the same time share one request. This
+         * applies to the show coins and receipt calls of every account created by the factory, and is on by
+         * default. Deposits, withdrawals and checks are never shared.
+         */
+        public Builder setCoalesceRequests(boolean coalesceRequests) {
+            this.coalesceRequests = coalesceRequests;
+            return this;
+        }
+
+        /**
+         * Sets the {@link CallPolicy} that decides the deadlines, retries and hedging of every server call. The
+         * default is {@link CallPolicy#defaults}.
+         */
+        public Builder setCallPolicy(CallPolicy callPolicy) {
+            this.callPolicy = callPolicy;
+            return this;
+        }
+
+        /**
+         * Sets when the circuit breaker of a host opens. After {@code failureThreshold} calls in a row fail with a
+         * connection error, timeout or server error, calls to that host fail straight away with a
+         * {@link CallRejectedException} for {@code openDuration}. A single trial call then decides whether the
+         * breaker closes. Use a threshold of 0 to turn the breakers off. The defaults are 5 and 30000.
+         */
+        public Builder setCircuitBreaker(int failureThreshold, int openDuration) {
+            this.failureThreshold = failureThreshold;
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * Adds a listener that is told whenever the circuit breaker of a host changes state.
+         */
+        public Builder addCircuitBreakerListener(CircuitBreakerListener listener) {
+            circuitBreakerListeners.add(listener);
+            return this;
+        }
+
+        /**
+         * Sets the bulkhead of each host: the largest number of calls in flight to one host, and the largest number
+         * of calls waiting for one of them. Calls beyond both fail with a {@link CallRejectedException}, so a slow
+         * host cannot starve calls to healthy ones. Use a limit of 0 for no limit. The defaults are 64 and 1024.
+         */
+        public Builder setMaxConcurrentCallsPerHost(int maxConcurrentCallsPerHost, int maxQueuedCallsPerHost) {
+            this.maxConcurrentCallsPerHost = maxConcurrentCallsPerHost;
+            this.maxQueuedCallsPerHost = maxQueuedCallsPerHost;
+            return this;
+        }
+
+        /**
+         * Lets the bulkhead limit of each host follow the host's round-trip times, between {@code minLimit} and
+         * {@code maxLimit} calls in flight. The limit starts at the limit of
+         * {@link #setMaxConcurrentCallsPerHost}, grows by about one call for each full limit of calls that come back
+         * within twice their usual round trip, and is cut by 10% when calls slow down further or fail because the
+         * host is overloaded (HTTP 429 or 5xx, timeouts, connection errors). It stays off unless this is called.
+         */
+        public Builder setAdaptiveConcurrency(int minLimit, int maxLimit) {
+            this.minConcurrencyLimit = minLimit;
+            this.maxConcurrencyLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Limits the calls to each CloudService host to {@code callsPerSecond}, shared by every account on the host.
+         * Up to {@code burst} calls may be sent at once after a quiet spell. A call over the limit waits for its turn
+         * without holding a thread, or fails with a {@link CallRejectedException} if it would wait longer than
+         * {@link #setMaxRateLimitWait} or its deadline. When the host throttles a call (HTTP 429 or 503) the rate is
+         * halved and calls are held back for as long as its {@code Retry-After} header asks, then the rate recovers
+         * over the following seconds. Hosts are not limited by default, but are still held back when they throttle.
+         */
+        public Builder setRateLimit(double callsPerSecond, int burst) {
+            this.hostRate = new RateLimiter.Rate(callsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * Limits the calls of one kind, such as {@link CloudOperation#DEPOSIT}, to each CloudService host. This
+         * applies on top of the host's own limit, and behaves the same way.
+         */
+        public Builder setRateLimit(CloudOperation operation, double callsPerSecond, int burst) {
+            operationRates.put(operation, new RateLimiter.Rate(callsPerSecond, burst));
+            return this;
+        }
+
+        /**
+         * Sets the longest a call waits for the rate limiter before it is refused. Use 0 to refuse calls over the
+         * limit straight away. The default is 30000.
+         */
+        public Builder setMaxRateLimitWait(int maxRateLimitWait) {
+            this.maxRateLimitWait = maxRateLimitWait;
+            return this;
+        }
+
+        /**
+         * Sets the {@link CloudBankMetrics} that is told about every server call, such as a {@link CloudBankStats}.
+         * The default, {@link CloudBankMetrics#NONE}, records nothing. JDK Flight Recorder events are recorded
+         * either way.
+         */
+        public Builder setMetrics(CloudBankMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Sets the URL scheme of every server call. The default is {@code https}, and CloudService servers only
+         * accept it. Set {@code http} only to call a local test server such as a benchmark or load-test stub, as
+         * the private key is then sent in plain text.
+         */
+        public Builder setScheme(String scheme) {
+            this.scheme = scheme;
+            return this;
+        }
+
+        /**
+         * Creates the {@link CloudBankClientFactory} and opens its connection pool.
+         *
+         * @returns {@link CloudBankClientFactory}
+         */
+        public CloudBankClientFactory build() {
+            return new CloudBankClientFactory(this);
+        }
+    }
+}
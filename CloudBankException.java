@@ -0,0 +1,100 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code CloudBankException} is thrown when a CloudServer answers a server call with a failure instead of the
+ * expected result. The server's explanation, if it sent one, is saved in {@link #getFailResponse}.
+ */
+public class CloudBankException extends RuntimeException {
+
+
+    // Fields
+
+    private static final long serialVersionUID = 1L;
+
+    private final int httpStatus;
+    private final FailResponse failResponse;
+    private final long retryAfter;
+
+
+    // Constructors
+
+    public CloudBankException(int httpStatus, FailResponse failResponse) {
+        this(httpStatus, failResponse, -1);
+    }
+
+    /**
+     * @param retryAfter how long the server asked callers to wait, in milliseconds, or -1 if it did not say
+     */
+    public CloudBankException(int httpStatus, FailResponse failResponse, long retryAfter) {
+        super(describe(httpStatus, failResponse));
+        this.httpStatus = httpStatus;
+        this.failResponse = failResponse;
+        this.retryAfter = retryAfter;
+    }
+
+    public CloudBankException(int httpStatus, String message) {
+        super(message);
+        this.httpStatus = httpStatus;
+        this.failResponse = null;
+        this.retryAfter = -1;
+    }
+
+
+    // Methods
+
+    private static String describe(int httpStatus, FailResponse failResponse) {
+        if (failResponse == null)
+            return "CloudServer responded with HTTP " + httpStatus;
+        if (failResponse.message == null)
+            return "CloudServer responded with status " + failResponse.status;
+        return failResponse.message;
+    }
+
+
+    // Getters
+
+    /**
+     * Returns the HTTP status code of the failed server call.
+     *
+     * @returns int
+     */
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+
+    /**
+     * Returns the failure sent by the CloudServer, or null if the server did not send one.
+     *
+     * @returns {@link FailResponse}
+     */
+    public FailResponse getFailResponse() {
+        return failResponse;
+    }
+
+    /**
+     * Returns how long the server asked callers to wait before calling again, from its {@code Retry-After} header,
+     * in milliseconds. Returns -1 if the server did not send one.
+     *
+     * @returns long
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Returns true if the server refused the call because it is receiving too many calls (HTTP 429 or 503), rather
+     * than because of the call itself.
+     *
+     * @returns boolean
+     */
+    public boolean isThrottled() {
+        return httpStatus == 429 || httpStatus == 503;
+    }
+}
@@ -0,0 +1,51 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code CloudBankMetrics} is told about every server call made through a {@link CloudBankClientFactory}. It is the
+ * hook for exporting the SDK's measurements to a metrics library such as Micrometer or Dropwizard Metrics; the
+ * built-in {@link CloudBankStats} keeps them in memory. The default, {@link #NONE}, ignores every call.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>CloudBankStats stats = new CloudBankStats();</code>
+ * <br>
+ * <code>CloudBankClientFactory factory = CloudBankClientFactory.builder().setMetrics(stats).build();</code>
+ * <p>
+ * <br>
+ * Both methods are called on the thread that starts or finishes the call, often a Netty I/O thread, so they should
+ * return quickly and must not block.
+ */
+public interface CloudBankMetrics {
+
+    /**
+     * Ignores every call.
+     */
+    CloudBankMetrics NONE = new CloudBankMetrics() {
+    };
+
+    /**
+     * Called when a server call starts, before its first attempt is sent.
+     *
+     * @param operation the kind of call
+     * @param host      the CloudService host the call is for
+     */
+    default void onCallStarted(CloudOperation operation, String host) {
+
+    }
+
+    /**
+     * Called once when a server call has finished, whether it succeeded, failed or was cancelled.
+     *
+     * @param call what the call did
+     */
+    default void onCallFinished(CallRecord call) {
+
+    }
+}
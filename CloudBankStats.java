@@ -0,0 +1,225 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code CloudBankStats} is a {@link CloudBankMetrics} that keeps running totals in memory for each
+ * {@link CloudOperation}: calls, failures, calls in flight, bytes sent and received, a latency histogram and failures
+ * by {@link CallRecord#errorType}. Recording a call only touches striped counters, so it does not slow calls down
+ * when many threads finish calls at once.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>CloudBankStats stats = new CloudBankStats();</code>
+ * <br>
+ * <code>CloudBankClientFactory factory = CloudBankClientFactory.builder().setMetrics(stats).build();</code>
+ * <br>
+ * <code>long p99 = stats.get(CloudOperation.DEPOSIT).getLatencyPercentile(99);</code>
+ */
+public class CloudBankStats implements CloudBankMetrics {
+
+
+    // Fields
+
+    private final Map<CloudOperation, OperationStats> operations = new EnumMap<>(CloudOperation.class);
+
+
+    // Constructor
+
+    public CloudBankStats() {
+        for (CloudOperation operation : CloudOperation.values())
+            operations.put(operation, new OperationStats());
+    }
+
+
+    // Methods
+
+    @Override
+    public void onCallStarted(CloudOperation operation, String host) {
+        operations.get(operation).inFlight.increment();
+    }
+
+    @Override
+    public void onCallFinished(CallRecord call) {
+        operations.get(call.operation).record(call);
+    }
+
+    /**
+     * Returns the totals of one kind of call.
+     *
+     * @param operation the kind of call
+     * @returns {@link OperationStats}
+     */
+    public OperationStats get(CloudOperation operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * Returns the number of calls of every kind that are in flight.
+     *
+     * @returns long
+     */
+    public long getInFlight() {
+        long inFlight = 0;
+        for (OperationStats stats : operations.values())
+            inFlight += stats.getInFlight();
+        return inFlight;
+    }
+
+
+    /**
+     * OperationStats holds the running totals of one kind of call. Latencies are counted in buckets whose upper
+     * bounds are powers of two microseconds, so percentiles are accurate to within a factor of two.
+     */
+    public static final class OperationStats {
+
+        /**
+         * The number of latency buckets. Bucket {@code i} counts calls that took less than {@code 2^i}
+         * microseconds, and at least {@code 2^(i-1)}; the last bucket also counts every slower call.
+         */
+        public static final int LATENCY_BUCKETS = 32;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder totalLatencyNanos = new LongAdder();
+        private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS);
+        private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        private OperationStats() {
+
+        }
+
+        private void record(CallRecord call) {
+            inFlight.decrement();
+            calls.increment();
+            bytesSent.add(call.bytesSent);
+            bytesReceived.add(call.bytesReceived);
+            totalLatencyNanos.add(call.latencyNanos);
+            long micros = TimeUnit.NANOSECONDS.toMicros(call.latencyNanos);
+            latencies.incrementAndGet(Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+            if (call.failure != null) {
+                failures.increment();
+                errors.computeIfAbsent(call.errorType, key -> new LongAdder()).increment();
+            }
+        }
+
+        /**
+         * Returns the number of calls that have finished.
+         *
+         * @returns long
+         */
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        /**
+         * Returns the number of calls that have failed.
+         *
+         * @returns long
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Returns the number of calls that have started and not yet finished.
+         *
+         * @returns long
+         */
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        /**
+         * Returns the number of request body bytes written by every call.
+         *
+         * @returns long
+         */
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+
+        /**
+         * Returns the number of response body bytes received by every call.
+         *
+         * @returns long
+         */
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        /**
+         * Returns the mean latency of the finished calls, in microseconds, or 0 if none have finished.
+         *
+         * @returns long
+         */
+        public long getMeanLatency() {
+            long count = calls.sum();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.sum() / count);
+        }
+
+        /**
+         * Returns the latency, in microseconds, that {@code percentile} percent of the finished calls took no longer
+         * than, rounded up to the bound of its bucket. Returns 0 if no calls have finished.
+         *
+         * @param percentile between 0 and 100
+         * @returns long
+         */
+        public long getLatencyPercentile(double percentile) {
+            long[] histogram = getLatencyHistogram();
+            long count = 0;
+            for (long bucket : histogram)
+                count += bucket;
+            if (count == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank)
+                    return 1L << i;
+            }
+            return 1L << (LATENCY_BUCKETS - 1);
+        }
+
+        /**
+         * Returns a copy of the latency histogram, with {@link #LATENCY_BUCKETS} buckets.
+         *
+         * @returns long[]
+         */
+        public long[] getLatencyHistogram() {
+            long[] histogram = new long[LATENCY_BUCKETS];
+            for (int i = 0; i < LATENCY_BUCKETS; i++)
+                histogram[i] = latencies.get(i);
+            return histogram;
+        }
+
+        /**
+         * Returns the number of failed calls for each {@link CallRecord#errorType}, such as the
+         * {@link FailResponse#status} of the server's refusals.
+         *
+         * @returns {@link Map}
+         */
+        public Map<String, Long> getErrors() {
+            Map<String, Long> counts = new TreeMap<>();
+            errors.forEach((type, count) -> counts.put(type, count.sum()));
+            return counts;
+        }
+    }
+}
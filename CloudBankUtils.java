@@ -9,16 +9,23 @@ package CloudCoinJavaSDK;
 
 import com.google.gson.Gson;
 import org.asynchttpclient.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-
-import static org.asynchttpclient.Dsl.asyncHttpClient;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * CloudBankUtils handles all connectivity with a CloudServer, and initiates all CloudCoin exchanges. CloudBankUtils
@@ -52,26 +59,88 @@ import static org.asynchttpclient.Dsl.asyncHttpClient;
  * CloudBankUtils cloudBankUtils = new CloudBankUtils(bankKeys);</code>
  * <p>
  * <br>
+ * <h3>Concurrent use</h3>
+ * <p>
+ * The methods {@link #getBankTotal}, {@link #depositStack(Path)}, {@link #getReceipt(String)},
+ * {@link #withdrawStack}, {@link #withdrawStackToFile}, {@link #withdrawReceipt}, {@link #createCheck} and
+ * {@link #redeemCheck} keep no state between calls. Their futures complete with the server's result, or
+ * exceptionally with a {@link CloudBankException} if the server refuses the call, so one instance can run any
+ * number of them at the same time. {@link #getBalance} is safe to call concurrently as well; callers that ask
+ * at the same time share one request.
+ * <p>
+ * The older methods such as {@link #showCoins} and {@link #sendStackToCloudBank()} cache their results in this
+ * object for the getters, and should not be run concurrently on the same instance.
+ * <p>
+ * <br>
+ * Each CloudBankUtils created with {@link #CloudBankUtils(BankKeys)} opens its own connection pool. To serve many
+ * accounts from one pool, create them with {@link CloudBankClientFactory#create} instead.
  */
-public class CloudBankUtils implements ICloudBankUtils {
+public class CloudBankUtils implements ICloudBankUtils, Closeable {
 
 
     // Fields
 
-    private BankKeys keys;
-    private AsyncHttpClient client;
-    private Gson gson;
-
-    private String rawStackForDeposit;
-    private String rawStackFromWithdrawal;
-    private String rawReceipt;
-    private String receiptNumber;
-    private int totalCoinsWithdrawn;
-    private int onesInBank;
-    private int fivesInBank;
-    private int twentyFivesInBank;
-    private int hundredsInBank;
-    private int twohundredfiftiesInBank;
+    private static final Logger LOG = LoggerFactory.getLogger(CloudBankUtils.class);
+
+    private static final String FAIL_STATUS = "fail";
+    private static final Integer SUCCESS_STATUS = 200;
+    private static final String CONNECTION_HINT = "Check your connection, or your public key";
+
+    // Decoders for each kind of server response. They hold no state, so one instance serves every call.
+    private static final CloudResponseHandler.Decoder<BankTotal> BANK_TOTAL = (gson, status, body) -> {
+        BankTotal bankTotal = body.fromJson(gson, BankTotal.class);
+        if (!"coins_shown".equals(bankTotal.status))
+            throw body.failure(gson, status);
+        return bankTotal;
+    };
+    private static final CloudResponseHandler.Decoder<DepositResponse> DEPOSIT_RESPONSE = (gson, status, body) -> {
+        DepositResponse depositResponse = body.fromJson(gson, DepositResponse.class);
+        if (FAIL_STATUS.equals(depositResponse.status))
+            throw body.failure(gson, status);
+        return depositResponse;
+    };
+    private static final CloudResponseHandler.Decoder<Receipt> RECEIPT =
+            (gson, status, body) -> body.fromJson(gson, Receipt.class);
+    private static final CloudResponseHandler.Decoder<ReceiptSummary> RECEIPT_SUMMARY =
+            (gson, status, body) -> ReceiptReader.read(body.reader(), null);
+    private static final CloudResponseHandler.Decoder<String> STACK = (gson, status, body) -> {
+        if (!body.isStack())
+            throw body.failure(gson, status);
+        return body.asString();
+    };
+    private static final CloudResponseHandler.Decoder<String> CHECK_STACK = (gson, status, body) -> {
+        FailResponse failResponse = body.fromJson(gson, FailResponse.class);
+        if (null != failResponse.message)
+            throw new CloudBankException(status, failResponse);
+        return body.asString();
+    };
+
+    private static final CloudResponseHandler.Decoder<RequestCoalescer.Exchange> EXCHANGE =
+            (gson, status, body) -> new RequestCoalescer.Exchange(status, body);
+
+    private final BankKeys keys;
+    private final CloudBankClientFactory factory;
+    private final boolean ownsFactory;
+    private final AsyncHttpClient client;
+    private final Gson gson;
+    private final int maxResponseBodySize;
+    private final BalanceCache balanceCache;
+    private final RequestCoalescer coalescer;
+    private final CallPolicy callPolicy;
+    // The scheme and separator in front of every server URL, such as "https://".
+    private final String origin;
+
+    // Cached by the older methods for the getters and for chaining; not used by the stateless methods.
+    private volatile String rawStackForDeposit;
+    private volatile String rawStackFromWithdrawal;
+    private volatile Receipt cachedReceipt;
+    private volatile String receiptNumber;
+    private volatile int totalCoinsWithdrawn;
+    private volatile int onesInBank;
+    private volatile int fivesInBank;
+    private volatile int twentyFivesInBank;
+    private volatile int hundredsInBank;
+    private volatile int twohundredfiftiesInBank;
 
 
     // Constructor
@@ -116,9 +185,28 @@ public class CloudBankUtils implements ICloudBankUtils {
      * @param bankKeys the {@link BankKeys} object containing the encryption keys for the current account.
      */
     public CloudBankUtils(BankKeys bankKeys) {
+        this(bankKeys, new CloudBankClientFactory(), true);
+    }
+
+    /**
+     * Constructs a CloudBankUtils object that sends its server calls through the connection pool of
+     * {@code factory}. If {@code ownsFactory} is true, {@link #close} also closes the factory.
+     *
+     * @param bankKeys    the {@link BankKeys} object containing the encryption keys for the current account.
+     * @param factory     the {@link CloudBankClientFactory} that owns the connection pool.
+     * @param ownsFactory true if this object is the only user of {@code factory}.
+     */
+    CloudBankUtils(BankKeys bankKeys, CloudBankClientFactory factory, boolean ownsFactory) {
         keys = bankKeys;
-        client = asyncHttpClient();
+        this.factory = factory;
+        this.ownsFactory = ownsFactory;
+        client = factory.getClient();
         gson = new Gson();
+        maxResponseBodySize = factory.getMaxResponseBodySize();
+        balanceCache = new BalanceCache(this::getBankTotal, factory.getBalanceCacheTtl());
+        coalescer = factory.getCoalescer();
+        callPolicy = factory.getCallPolicy();
+        origin = factory.getScheme() + "://";
     }
 
 
@@ -126,7 +214,9 @@ public class CloudBankUtils implements ICloudBankUtils {
 
     /**
      * Calls the CloudService's show coins service for the server that this object holds the keys for.
-     * The results are saved in this class's public properties if successful.
+     * The results are saved in this class's public properties if successful. The balance is read through
+     * {@link #getBalance}, so calls that arrive while a request is in flight, or within the balance cache time to
+     * live, share one request.
      * <p>
      * <br>
      * This method returns a {@link CompletableFuture} object that can be used to track server progress or chain
@@ -147,59 +237,64 @@ public class CloudBankUtils implements ICloudBankUtils {
      * @returns {@link CompletableFuture}
      */
     public CompletableFuture<Object> showCoins() {
-        //the private key is sent as form url encoded content
-        CompletableFuture<Object> clientCall = client.preparePost("https://" + keys.publickey + "/show_coins.aspx")
-                .addFormParam("pk", keys.privatekey)
-                .execute(new AsyncHandler<>() {
-                    private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
-                    private Integer status;
-
-                    @Override
-                    public State onStatusReceived(HttpResponseStatus responseStatus) {
-                        builder.accumulate(responseStatus);
-                        status = responseStatus.getStatusCode();
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onHeadersReceived(HttpResponseHeaders headers) {
-                        builder.accumulate(headers);
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
-                        builder.accumulate(bodyPart);
-                        return State.CONTINUE;
-                    }
+        return legacy(getBalance().thenAccept(bankTotal -> {
+            onesInBank = bankTotal.ones;
+            fivesInBank = bankTotal.fives;
+            twentyFivesInBank = bankTotal.twentyfives;
+            hundredsInBank = bankTotal.hundreds;
+            twohundredfiftiesInBank = bankTotal.twohundredfifties;
+        }), CloudOperation.SHOW_COINS, keys.publickey, null, CONNECTION_HINT);
+    }
 
-                    @Override
-                    public Integer onCompleted() {
-                        String response = builder.build().getResponseBody();
-                        BankTotal bankTotals = gson.fromJson(response, BankTotal.class);
-                        if ("coins_shown".equals(bankTotals.status)) {
-                            onesInBank = bankTotals.ones;
-                            fivesInBank = bankTotals.fives;
-                            twentyFivesInBank = bankTotals.twentyfives;
-                            hundredsInBank = bankTotals.hundreds;
-                            twohundredfiftiesInBank = bankTotals.twohundredfifties;
-                        } else {
-                            System.out.println(bankTotals.status);
-                            FailResponse failResponse = gson.fromJson(response, FailResponse.class);
-                            System.out.println(failResponse.message);
-                        }
-                        return status;
-                    }
+    /**
+     * Calls the CloudService's show coins service for the server that this object holds the keys for, and returns
+     * the balance of the account. Nothing is cached in this object.
+     * <p>
+     * <br>
+     * <h3>Usage</h3>
+     * <p>
+     * <code>cloudBankUtils.getBankTotal().thenAccept(bankTotal -> {</code>
+     * <br>
+     * <code>// This code runs after the server call is complete</code>
+     * <br>
+     * <code>}</code>
+     *
+     * @returns {@link CompletableFuture} that completes with the account's {@link BankTotal}
+     */
+    public CompletableFuture<BankTotal> getBankTotal() {
+        //the private key is sent as form url encoded content
+        String url = origin + keys.publickey + "/show_coins.aspx";
+        return executeShared(CloudOperation.SHOW_COINS, url + " " + keys.privatekey, () -> client.preparePost(url)
+                .addFormParam("pk", keys.privatekey), BANK_TOTAL);
+    }
 
-                    @Override
-                    public void onThrowable(Throwable t) {
-                        System.out.println("Exception: " + t.getMessage());
-                        System.out.println("Check your connection, or your public key");
-                    }
-                })
-                .toCompletableFuture();
+    /**
+     * Returns the balance of the account, reusing a recent result when there is one. Callers that ask while the
+     * balance is being fetched all share that one request, and a balance is reused for the time set with
+     * {@link CloudBankClientFactory.Builder#setBalanceCacheTtl}. Deposits, withdrawals and checks made through this
+     * object drop the cached balance when they complete. Use {@link #getBankTotal} to always ask the server.
+     * <p>
+     * <br>
+     * <h3>Usage</h3>
+     * <p>
+     * <code>cloudBankUtils.getBalance().thenAccept(bankTotal -> {</code>
+     * <br>
+     * <code>// This code runs once the balance is known</code>
+     * <br>
+     * <code>}</code>
+     *
+     * @returns {@link CompletableFuture} that completes with the account's {@link BankTotal}
+     */
+    public CompletableFuture<BankTotal> getBalance() {
+        return balanceCache.get();
+    }
 
-        return clientCall;
+    /**
+     * Drops the cached balance, so the next {@link #getBalance} or {@link #showCoins} asks the server. Call this
+     * after the account has been changed by something other than this object.
+     */
+    public void invalidateBalance() {
+        balanceCache.invalidate();
     }
 
     /**
@@ -236,50 +331,7 @@ public class CloudBankUtils implements ICloudBankUtils {
      * @returns {@link CompletableFuture}
      */
     public CompletableFuture<Object> sendStackToCloudBank() {
-        CompletableFuture<Object> clientCall = client.preparePost("https://" + keys.publickey + "/deposit_one_stack.aspx")
-                .addFormParam("pk", keys.privatekey)
-                .addFormParam("stack", rawStackForDeposit)
-                .execute(new AsyncHandler<>() {
-                    private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
-                    private Integer status;
-
-                    @Override
-                    public State onStatusReceived(HttpResponseStatus responseStatus) {
-                        builder.accumulate(responseStatus);
-                        status = responseStatus.getStatusCode();
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onHeadersReceived(HttpResponseHeaders headers) {
-                        builder.accumulate(headers);
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
-                        builder.accumulate(bodyPart);
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public Integer onCompleted() {
-                        String response = builder.build().getResponseBody();
-                        DepositResponse cbf = gson.fromJson(response, DepositResponse.class);
-                        System.out.println(cbf.message);
-                        receiptNumber = cbf.receipt;
-                        return status;
-                    }
-
-                    @Override
-                    public void onThrowable(Throwable t) {
-                        System.out.println("Exception: " + t.getMessage());
-                        System.out.println("Check your connection, or your public key");
-                    }
-                })
-                .toCompletableFuture();
-
-        return clientCall;
+        return sendStackToCloudBank(keys.publickey);
     }
 
     /**
@@ -307,51 +359,133 @@ public class CloudBankUtils implements ICloudBankUtils {
      *                    "https://".
      * @returns {@link CompletableFuture}
      */
+    @SuppressWarnings("try")
     public CompletableFuture<Object> sendStackToCloudBank(String toPublicURL) {
-        CompletableFuture<Object> clientCall = client.preparePost("https://" + toPublicURL + "/deposit_one_stack.aspx")
+        return legacy(depositStack(rawStackForDeposit, toPublicURL).thenAccept(depositResponse -> {
+            receiptNumber = depositResponse.receipt;
+            if (LOG.isInfoEnabled()) {
+                try (LogContext context = LogContext.of(CloudOperation.DEPOSIT, toPublicURL, receiptNumber)) {
+                    LOG.info("Deposit answered: {}", depositResponse.message);
+                }
+            }
+        }), CloudOperation.DEPOSIT, toPublicURL, null, CONNECTION_HINT);
+    }
+
+    /**
+     * Sends a CloudCoin stack to a CloudService server. The server is specified by the URL defined in
+     * {@code toPublicURL}. Nothing is cached in this object; the receipt number is returned in
+     * {@link DepositResponse#receipt}.
+     *
+     * @param stack       the CloudCoin stack being deposited
+     * @param toPublicURL the url of the CloudService server the CloudCoins are being sent to. Do not include
+     *                    "https://".
+     * @returns {@link CompletableFuture} that completes with the server's {@link DepositResponse}
+     */
+    public CompletableFuture<DepositResponse> depositStack(String stack, String toPublicURL) {
+        return deposit(client.preparePost(origin + toPublicURL + "/deposit_one_stack.aspx")
                 .addFormParam("pk", keys.privatekey)
-                .addFormParam("stack", rawStackForDeposit)
-                .execute(new AsyncHandler<>() {
-                    private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
-                    private Integer status;
-
-                    @Override
-                    public State onStatusReceived(HttpResponseStatus responseStatus) {
-                        builder.accumulate(responseStatus);
-                        status = responseStatus.getStatusCode();
-                        return State.CONTINUE;
-                    }
+                .addFormParam("stack", stack));
+    }
 
-                    @Override
-                    public State onHeadersReceived(HttpResponseHeaders headers) {
-                        builder.accumulate(headers);
-                        return State.CONTINUE;
-                    }
+    /**
+     * Streams a CloudCoin stack file to the CloudService server that this object holds the keys for. Unlike
+     * {@link #loadStackFromFile} and {@link #sendStackToCloudBank()}, the file is never held in memory; it is read
+     * and URL-encoded one chunk at a time while the request is sent.
+     * <p>
+     * <br>
+     * This method returns a {@link CompletableFuture} object that can be used to track server progress or chain
+     * methods together.
+     * <br>
+     * <h3>Usage</h3>
+     * <p>
+     * <code>cloudBankUtils.depositStack(Paths.get(filepath)).thenAccept(depositResponse -> {</code>
+     * <br>
+     * <code>// This code runs after the server call is complete</code>
+     * <br>
+     * <code>}</code>
+     *
+     * @param stackFile the CloudCoin stack file being deposited
+     * @returns {@link CompletableFuture} that completes with the server's {@link DepositResponse}
+     */
+    public CompletableFuture<DepositResponse> depositStack(Path stackFile) {
+        return depositStack(stackFile, keys.publickey);
+    }
 
-                    @Override
-                    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
-                        builder.accumulate(bodyPart);
-                        return State.CONTINUE;
-                    }
+    /**
+     * Streams a CloudCoin stack file to a CloudService server. The server is specified by the URL defined in
+     * {@code toPublicURL}. The file is never held in memory; it is read and URL-encoded one chunk at a time while
+     * the request is sent.
+     *
+     * @param stackFile   the CloudCoin stack file being deposited
+     * @param toPublicURL the url of the CloudService server the CloudCoins are being sent to. Do not include
+     *                    "https://".
+     * @returns {@link CompletableFuture} that completes with the server's {@link DepositResponse}
+     */
+    public CompletableFuture<DepositResponse> depositStack(Path stackFile, String toPublicURL) {
+        return deposit(client.preparePost(origin + toPublicURL + "/deposit_one_stack.aspx")
+                .setHeader("Content-Type", StackFileBody.CONTENT_TYPE)
+                .setBody(new StackFileBody(stackFile, keys.privatekey)));
+    }
 
-                    @Override
-                    public Integer onCompleted() {
-                        String response = builder.build().getResponseBody();
-                        DepositResponse cbf = gson.fromJson(response, DepositResponse.class);
-                        System.out.println(cbf.message);
-                        receiptNumber = cbf.receipt;
-                        return status;
-                    }
+    /**
+     * Deposits every CloudCoin stack file in {@code directory}. Files are streamed with {@link #depositStack(Path)},
+     * up to {@link DepositOptions#maxConcurrency} at a time, and the directory is only read as fast as deposits
+     * complete. Each file that is deposited is moved to {@link DepositOptions#doneDirectory}, with a number added to
+     * its name if the folder already holds one of that name; files that fail stay where they are. A deposited file
+     * that cannot be moved is listed in {@link DepositSummary#notMoved}.
+     * <p>
+     * <br>
+     * The outcome of each file is passed to {@link DepositOptions#listener} as soon as it is known. The returned
+     * {@link CompletableFuture} completes with a {@link DepositSummary} once every file has been handled.
+     * <br>
+     * <h3>Usage</h3>
+     * <p>
+     * <code>cloudBankUtils.depositDirectory(Paths.get(folder), new DepositOptions()).thenAccept(summary -> {</code>
+     * <br>
+     * <code>// This code runs after every file has been deposited</code>
+     * <br>
+     * <code>}</code>
+     *
+     * @param directory the directory holding the CloudCoin stack files
+     * @param options   the {@link DepositOptions} of this run
+     * @returns {@link CompletableFuture} that completes with the {@link DepositSummary}
+     */
+    public CompletableFuture<DepositSummary> depositDirectory(Path directory, DepositOptions options) {
+        return new DirectoryDepositor(this, directory, options).start();
+    }
 
-                    @Override
-                    public void onThrowable(Throwable t) {
-                        System.out.println("Exception: " + t.getMessage());
-                        System.out.println("Check your connection, or your public key");
-                    }
-                })
-                .toCompletableFuture();
+    /**
+     * Returns a {@link Flow.Publisher} that deposits each stack file published by {@code stackFiles} with
+     * {@link #depositStack(Path)}, and publishes the outcome of each deposit. Files are only requested from
+     * {@code stackFiles} as the subscriber asks for results, with no more than {@link DepositOptions#maxConcurrency}
+     * deposits in flight, so a slow subscriber slows the deposits instead of filling memory.
+     * <p>
+     * <br>
+     * Results are published in the order the deposits finish, on {@link DepositOptions#executor}. Failed deposits
+     * are published as results rather than ending the stream. {@link DepositOptions#toPublicURL} is used when set;
+     * the files are not moved, and {@link DepositOptions#glob}, {@link DepositOptions#doneDirectory} and
+     * {@link DepositOptions#listener} are not used.
+     * <br>
+     * <h3>Usage</h3>
+     * <p>
+     * <code>cloudBankUtils.publishDeposits(stackFiles, new DepositOptions()).subscribe(subscriber);</code>
+     *
+     * @param stackFiles publishes the CloudCoin stack files to deposit
+     * @param options    the {@link DepositOptions} of the deposits
+     * @returns {@link Flow.Publisher} of each {@link DepositResult}
+     */
+    public Flow.Publisher<DepositResult> publishDeposits(Flow.Publisher<Path> stackFiles, DepositOptions options) {
+        return new DepositPublisher(this, stackFiles, options);
+    }
 
-        return clientCall;
+    /**
+     * Sends a prepared deposit request and reads the server's response.
+     *
+     * @param request the deposit request, including the stack being deposited
+     * @returns {@link CompletableFuture}
+     */
+    private CompletableFuture<DepositResponse> deposit(BoundRequestBuilder request) {
+        return changesBalance(execute(CloudOperation.DEPOSIT, request, DEPOSIT_RESPONSE));
     }
 
     /**
@@ -378,45 +512,80 @@ public class CloudBankUtils implements ICloudBankUtils {
      * @returns {@link CompletableFuture}
      */
     public CompletableFuture<Object> getReceipt() {
-        CompletableFuture<Object> clientCall = client.prepareGet("https://" + keys.publickey + "/" + keys.privatekey + "/Receipts/" + receiptNumber + ".json")
-                .execute(new AsyncHandler<>() {
-                    private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
-                    private Integer status;
-
-                    @Override
-                    public State onStatusReceived(HttpResponseStatus responseStatus) {
-                        builder.accumulate(responseStatus);
-                        status = responseStatus.getStatusCode();
-                        return State.CONTINUE;
-                    }
+        return legacy(getReceipt(receiptNumber).thenAccept(receipt -> cachedReceipt = receipt),
+                CloudOperation.GET_RECEIPT, keys.publickey, receiptNumber,
+                "Check your connection, or your public key, or you may not have made a Deposit yet.");
+    }
 
-                    @Override
-                    public State onHeadersReceived(HttpResponseHeaders headers) {
-                        builder.accumulate(headers);
-                        return State.CONTINUE;
-                    }
+    /**
+     * Retrieves a receipt generated by the CloudService for a deposit. The receipt number is returned by a deposit
+     * in {@link DepositResponse#receipt}. Nothing is cached in this object.
+     *
+     * @param receiptNumber the receipt number of the deposit
+     * @returns {@link CompletableFuture} that completes with the {@link Receipt}
+     */
+    public CompletableFuture<Receipt> getReceipt(String receiptNumber) {
+        return executeReceipt(receiptNumber, RECEIPT);
+    }
 
-                    @Override
-                    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
-                        builder.accumulate(bodyPart);
-                        return State.CONTINUE;
-                    }
+    /**
+     * Retrieves a receipt generated by the CloudService for a deposit, and counts its totals while it is read. Unlike
+     * {@link #getReceipt(String)}, no {@link ReceiptDetail} is created for each CloudCoin, so the memory used does
+     * not grow with the size of the deposit.
+     *
+     * @param receiptNumber the receipt number of the deposit
+     * @returns {@link CompletableFuture} that completes with the {@link ReceiptSummary}
+     */
+    public CompletableFuture<ReceiptSummary> getReceiptSummary(String receiptNumber) {
+        return getReceiptSummary(receiptNumber, null);
+    }
 
-                    @Override
-                    public Integer onCompleted() {
-                        rawReceipt = builder.build().getResponseBody();
-                        return status;
-                    }
+    /**
+     * Retrieves a receipt generated by the CloudService for a deposit, counts its totals while it is read, and
+     * passes each CloudCoin to {@code visitor}. No {@link ReceiptDetail} objects are created.
+     *
+     * @param receiptNumber the receipt number of the deposit
+     * @param visitor       receives each CloudCoin of the receipt, or null
+     * @returns {@link CompletableFuture} that completes with the {@link ReceiptSummary}
+     */
+    public CompletableFuture<ReceiptSummary> getReceiptSummary(String receiptNumber, ReceiptVisitor visitor) {
+        return executeReceipt(receiptNumber, visitor == null ? RECEIPT_SUMMARY
+                : (gson, status, body) -> ReceiptReader.read(body.reader(), visitor));
+    }
 
-                    @Override
-                    public void onThrowable(Throwable t) {
-                        System.out.println("Exception: " + t.getMessage());
-                        System.out.println("Check your connection, or your public key, or you may not have made a Deposit yet.");
-                    }
-                })
-                .toCompletableFuture();
+    /**
+     * Retrieves a receipt generated by the CloudService for a deposit, and stores the detail of each CloudCoin in a
+     * compact {@link ReceiptTable}. Use this instead of {@link #getReceipt(String)} when the detail of large
+     * receipts is needed.
+     *
+     * @param receiptNumber the receipt number of the deposit
+     * @returns {@link CompletableFuture} that completes with the {@link ReceiptTable}
+     */
+    public CompletableFuture<ReceiptTable> getReceiptTable(String receiptNumber) {
+        return executeReceipt(receiptNumber, (gson, status, body) -> {
+            // Receipt detail takes at least 40 bytes per CloudCoin, which gives a capacity that rarely needs to grow.
+            ReceiptTable.Builder builder = new ReceiptTable.Builder(body.length() / 64);
+            ReceiptReader.read(body.reader(), builder);
+            return builder.build();
+        });
+    }
 
-        return clientCall;
+    /**
+     * Returns a {@link Flow.Publisher} of the CloudCoins in a receipt. The receipt is only requested once a
+     * subscriber asks for its first CloudCoin, and each subscriber makes its own request. A {@link ReceiptDetail}
+     * is decoded from the response each time the subscriber asks for one, so the details are never all held at once.
+     * <p>
+     * <br>
+     * The response itself is read in full before the first CloudCoin is published, and its size is limited by
+     * {@link CloudBankClientFactory.Builder#setMaxResponseBodySize}. The first CloudCoins are published on the
+     * thread that reads the response, so the subscriber should return quickly.
+     *
+     * @param receiptNumber the receipt number of the deposit
+     * @returns {@link Flow.Publisher} of each {@link ReceiptDetail}, in the order the server sent them
+     */
+    public Flow.Publisher<ReceiptDetail> publishReceipt(String receiptNumber) {
+        return new ReceiptPublisher(() -> executeReceipt(receiptNumber,
+                (gson, status, body) -> ReceiptReader.open(body.reader())));
     }
 
 
@@ -445,77 +614,54 @@ public class CloudBankUtils implements ICloudBankUtils {
      */
     public CompletableFuture<Object> getStackFromCloudBank(int amountToWithdraw) {
         totalCoinsWithdrawn = amountToWithdraw;
-        CompletableFuture<Object> clientCall = client.preparePost("https://" + keys.publickey + "/withdraw_account.aspx")
-                .addFormParam("amount", Integer.toString(amountToWithdraw))
-                .addFormParam("pk", keys.privatekey)
-                .execute(new AsyncHandler<>() {
-                    private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
-                    private Integer status;
-
-                    @Override
-                    public State onStatusReceived(HttpResponseStatus responseStatus) {
-                        builder.accumulate(responseStatus);
-                        status = responseStatus.getStatusCode();
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onHeadersReceived(HttpResponseHeaders headers) {
-                        builder.accumulate(headers);
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
-                        builder.accumulate(bodyPart);
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public Integer onCompleted() {
-                        rawStackFromWithdrawal = builder.build().getResponseBody();
-                        FailResponse failResponse = gson.fromJson(rawStackFromWithdrawal, FailResponse.class);
-                        System.out.println(failResponse.status);
-                        System.out.println(failResponse.message);
-                        return status;
-                    }
+        return legacy(withdrawStack(amountToWithdraw).thenAccept(stack -> rawStackFromWithdrawal = stack),
+                CloudOperation.WITHDRAW, keys.publickey, null, CONNECTION_HINT);
+    }
 
-                    @Override
-                    public void onThrowable(Throwable t) {
-                        System.out.println("Exception: " + t.getMessage());
-                        System.out.println("Check your connection, or your public key");
-                    }
-                })
-                .toCompletableFuture();
-
-        return clientCall;
-    }
-
-    /**
-     * Calculates a CloudCoin's denomination using its serial number {@code sn}.
-     *
-     * @param sn the serial number of a CloudCoin note
-     * @returns denomination amount of the CloudCoin
-     */
-    private int getDenomination(int sn) {
-        int nom;
-        if ((sn < 1)) {
-            nom = 0;
-        } else if ((sn < 2097153)) {
-            nom = 1;
-        } else if ((sn < 4194305)) {
-            nom = 5;
-        } else if ((sn < 6291457)) {
-            nom = 25;
-        } else if ((sn < 14680065)) {
-            nom = 100;
-        } else if ((sn < 16777217)) {
-            nom = 250;
-        } else {
-            nom = '0';
-        }
+    /**
+     * Retrieves CloudCoins from CloudService server that this object holds the keys for, and returns the resulting
+     * stack. Nothing is cached in this object. For large withdrawals, use {@link #withdrawStackToFile} instead.
+     *
+     * @param amountToWithdraw the amount of CloudCoins to withdraw
+     * @returns {@link CompletableFuture} that completes with the withdrawn CloudCoin stack
+     */
+    public CompletableFuture<String> withdrawStack(int amountToWithdraw) {
+        return changesBalance(execute(CloudOperation.WITHDRAW,
+                client.preparePost(origin + keys.publickey + "/withdraw_account.aspx")
+                        .addFormParam("amount", Integer.toString(amountToWithdraw))
+                        .addFormParam("pk", keys.privatekey), STACK));
+    }
 
-        return nom;
+    /**
+     * Retrieves CloudCoins from CloudService server that this object holds the keys for, and writes the resulting
+     * stack straight to a file in {@code directory}. The stack is written to disk while it downloads and is never
+     * held in memory, so large withdrawals use no heap for the stack. The file is named with
+     * {@link #getStackName} and only appears once the whole stack has been received. An existing file is never
+     * replaced; if the name is taken, a number is added to it.
+     * <p>
+     * <br>
+     * The returned {@link CompletableFuture} completes with the path of the saved stack file. If the server
+     * refuses the withdrawal, it completes exceptionally with a {@link CloudBankException}.
+     * <br>
+     * <h3>Usage</h3>
+     * <p>
+     * <code>cloudBankUtils.withdrawStackToFile(amount, directory).thenAccept(stackFile -> {</code>
+     * <br>
+     * <code>// This code runs after the stack file is saved</code>
+     * <br>
+     * <code>}</code>
+     *
+     * @param amountToWithdraw the amount of CloudCoins to withdraw
+     * @param directory        the directory the stack file is saved to
+     * @returns {@link CompletableFuture}
+     */
+    public CompletableFuture<Path> withdrawStackToFile(int amountToWithdraw, Path directory) {
+        String stackName = getStackName(amountToWithdraw, null);
+        return changesBalance(call(CloudOperation.WITHDRAW,
+                client.preparePost(origin + keys.publickey + "/withdraw_account.aspx")
+                        .addFormParam("amount", Integer.toString(amountToWithdraw))
+                        .addFormParam("pk", keys.privatekey),
+                () -> new StackFileHandler(directory, stackName, gson)));
     }
 
     /**
@@ -542,62 +688,38 @@ public class CloudBankUtils implements ICloudBankUtils {
      * @returns {@link CompletableFuture}
      */
     public CompletableFuture<Object> getReceiptFromCloudBank() {
-        // ThreadStopper is used to stop the thread if the call to /get_receipt fails, and prevents the call to /withdraw_account
-        final AsyncThreadStopper threadStopper = new AsyncThreadStopper();
-
-        CompletableFuture<Object> clientCall = client.prepareGet("https://" + keys.publickey + "/get_receipt.aspx?rn="
-                + receiptNumber)
-                .addFormParam("pk", keys.privatekey)
-                .execute(new AsyncHandler<>() {
-                    private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
-                    private Integer status;
-
-                    @Override
-                    public State onStatusReceived(HttpResponseStatus responseStatus) {
-                        builder.accumulate(responseStatus);
-                        status = responseStatus.getStatusCode();
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onHeadersReceived(HttpResponseHeaders headers) {
-                        builder.accumulate(headers);
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
-                        builder.accumulate(bodyPart);
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public Integer onCompleted() {
-                        String rawReceipt = builder.build().getResponseBody();
-                        Receipt deserialReceipt = gson.fromJson(rawReceipt, Receipt.class);
-                        for (int i = 0; i < deserialReceipt.rd.length; i++)
-                            if ("authentic".equals(deserialReceipt.rd[i].status))
-                                totalCoinsWithdrawn += getDenomination(deserialReceipt.rd[i].sn);
-                        return status;
-                    }
-
-                    @Override
-                    public void onThrowable(Throwable t) {
-                        System.out.println("Exception: " + t.getMessage());
-                        System.out.println("Check your connection, or your public key");
-                        threadStopper.stopThread = true;
-                    }
-                })
-                .toCompletableFuture();
+        return legacy(getServerReceiptSummary(receiptNumber).thenCompose(summary -> {
+            totalCoinsWithdrawn = summary.authenticCoins;
+            return withdrawStack(totalCoinsWithdrawn);
+        }).thenAccept(stack -> rawStackFromWithdrawal = stack),
+                CloudOperation.WITHDRAW, keys.publickey, receiptNumber, CONNECTION_HINT);
+    }
 
-        clientCall.thenRun(() -> {
-            if (threadStopper.stopThread)
-                return;
+    /**
+     * Withdraws the authentic CloudCoins of a deposit from the CloudService server that this object holds the keys
+     * for. The server's receipt for the deposit is read first to find how many CloudCoins to withdraw. Nothing is
+     * cached in this object.
+     *
+     * @param receiptNumber the receipt number of the deposit
+     * @returns {@link CompletableFuture} that completes with the withdrawn CloudCoin stack
+     */
+    public CompletableFuture<String> withdrawReceipt(String receiptNumber) {
+        return getServerReceiptSummary(receiptNumber)
+                .thenCompose(summary -> withdrawStack(summary.authenticCoins));
+    }
 
-            getStackFromCloudBank(totalCoinsWithdrawn);
-        });
+    private CompletableFuture<ReceiptSummary> getServerReceiptSummary(String receiptNumber) {
+        String url = origin + keys.publickey + "/get_receipt.aspx?rn=" + receiptNumber;
+        return executeShared(CloudOperation.GET_RECEIPT, url + " " + keys.privatekey, () -> client.prepareGet(url)
+                .addFormParam("pk", keys.privatekey), RECEIPT_SUMMARY);
+    }
 
-        return clientCall;
+    private int getAuthenticCoins(Receipt receipt) {
+        int totalCoins = 0;
+        for (int i = 0; i < receipt.rd.length; i++)
+            if ("authentic".equals(receipt.rd[i].status))
+                totalCoins += Denominations.ofOrZero(receipt.rd[i].sn);
+        return totalCoins;
     }
 
     /**
@@ -619,20 +741,48 @@ public class CloudBankUtils implements ICloudBankUtils {
      * @returns Interpretation or null if no cached receipt is found.
      */
     public Interpretation interpretReceipt() {
+        Receipt receipt = cachedReceipt;
+        return receipt == null ? null : interpretReceipt(receipt);
+    }
+
+    /**
+     * Generates an Interpretation object which contains {@code summary}, its total amount, and a short description
+     * of the receipt. {@link Interpretation#receipt} is null, as a summary does not hold the detail of each
+     * CloudCoin.
+     *
+     * @param summary a receipt summary from {@link #getReceiptSummary(String)}
+     * @returns Interpretation
+     */
+    public Interpretation interpretReceipt(ReceiptSummary summary) {
+        Interpretation inter = new Interpretation();
+        int totalNotes = summary.total_authentic + summary.total_fracked;
+        inter.interpretation = "receipt number: " + summary.receipt_id + " total authentic notes: " + totalNotes
+                + " total authentic coins: " + summary.authenticCoins;
+        inter.summary = summary;
+        inter.totalAuthenticCoins = summary.authenticCoins;
+        inter.totalAuthenticNotes = totalNotes;
+
+        return inter;
+    }
+
+    /**
+     * Generates an Interpretation object which contains {@code receipt}, its total amount, and a short description
+     * of the receipt.
+     *
+     * @param receipt a receipt from {@link #getReceipt(String)}
+     * @returns Interpretation
+     */
+    public Interpretation interpretReceipt(Receipt receipt) {
         Interpretation inter = new Interpretation();
         String interpretation;
 
         // Tell the client how many coins were uploaded, how many counterfeit, etc.
-        Receipt deserialReceipt = gson.fromJson(rawReceipt, Receipt.class);
-        int totalNotes = deserialReceipt.total_authentic + deserialReceipt.total_fracked;
-        int totalCoins = 0;
-        for (int i = 0; i < deserialReceipt.rd.length; i++)
-            if ("authentic".equals(deserialReceipt.rd[i].status))
-                totalCoins += getDenomination(deserialReceipt.rd[i].sn);
-        interpretation = "receipt number: " + deserialReceipt.receipt_id + " total authentic notes: " + totalNotes
+        int totalNotes = receipt.total_authentic + receipt.total_fracked;
+        int totalCoins = getAuthenticCoins(receipt);
+        interpretation = "receipt number: " + receipt.receipt_id + " total authentic notes: " + totalNotes
                 + " total authentic coins: " + totalCoins;
         inter.interpretation = interpretation;
-        inter.receipt = deserialReceipt;
+        inter.receipt = receipt;
         inter.totalAuthenticCoins = totalCoins;
         inter.totalAuthenticNotes = totalNotes;
 
@@ -664,30 +814,145 @@ public class CloudBankUtils implements ICloudBankUtils {
      * @returns {@link String}
      */
     public String getStackName() {
+        return getStackName(totalCoinsWithdrawn, receiptNumber);
+    }
+
+    private static String getStackName(int coins, String receiptNumber) {
         if (receiptNumber == null) {
             Date date = new Date();
             String tag = "Withdrawal" + new SimpleDateFormat("MMddyyyyhhmmsSS").format(date);
-            return totalCoinsWithdrawn + ".CloudCoin." + tag + ".stack";
+            return coins + ".CloudCoin." + tag + ".stack";
         }
-        return totalCoinsWithdrawn + ".CloudCoin." + receiptNumber + ".stack";
+        return coins + ".CloudCoin." + receiptNumber + ".stack";
     }
 
     /**
-     * Transfers CloudCoins from this account to another account. This method first guarantees the local cache has
-     * enough CloudCoins with {@link #getStackFromCloudBank}, then transfers the cached CloudCoins with
-     * {@link #sendStackToCloudBank}. If the account does not have enough for the transaction, then neither the
-     * withdrawal or transaction will occur.
+     * Transfers CloudCoins from this account to another account with {@link #transfer(String, int)}. If the account
+     * does not have enough for the transaction, then neither the withdrawal or transaction will occur. Use
+     * {@link #transfer(String, int)} to find out when the transfer is done and whether it succeeded.
      *
      * @param toPublicKey the public url of the CloudService that is receiving the CloudCoins
      * @param coinsToSend the amount of CloudCoins to be transferred
      */
+    @SuppressWarnings("try")
     public void transferCloudCoins(final String toPublicKey, int coinsToSend) {
-        //Download amount
-        getStackFromCloudBank(coinsToSend).thenRun(() -> {
-            rawStackForDeposit = rawStackFromWithdrawal; // Make it so it will send the stack it received
-            CloudBankUtils.this.sendStackToCloudBank(toPublicKey);
+        transfer(toPublicKey, coinsToSend).thenAccept(result -> {
+            if (result.isSuccess() || !LOG.isWarnEnabled())
+                return;
+            try (LogContext context = LogContext.of(CloudOperation.WITHDRAW, keys.publickey, null)) {
+                LOG.warn("Transfer to {} failed: {}", toPublicKey, redact(result.error.getMessage()));
+                if (result.recoveryFile != null && result.recoveryFileComplete)
+                    LOG.warn("The withdrawn CloudCoins were saved to {}", result.recoveryFile);
+                else if (result.recoveryFile != null)
+                    LOG.warn("Part of the withdrawn stack was saved to {}; check the withdrawal receipt",
+                            result.recoveryFile);
+            }
         });
-        //Upload amount
+    }
+
+    /**
+     * Transfers CloudCoins from this account to another account, using the default {@link TransferOptions}.
+     *
+     * @param toPublicURL the url of the CloudService server the CloudCoins are being sent to. Do not include
+     *                    "https://".
+     * @param amount      the amount of CloudCoins to be transferred
+     * @returns {@link CompletableFuture} that completes with the {@link TransferResult}
+     * @see #transfer(String, int, TransferOptions)
+     */
+    public CompletableFuture<TransferResult> transfer(String toPublicURL, int amount) {
+        return transfer(toPublicURL, amount, new TransferOptions());
+    }
+
+    /**
+     * Transfers CloudCoins from this account to another account. The withdrawal and the deposit overlap: the deposit
+     * to {@code toPublicURL} starts as soon as the first bytes of the withdrawn stack arrive, and uploads the stack
+     * while the rest is still downloading. The stack is spooled to a file in {@link TransferOptions#spoolDirectory}
+     * on the way through and is never held in memory.
+     * <p>
+     * <br>
+     * The returned {@link CompletableFuture} completes once both the withdrawal and the deposit have finished, and
+     * never completes exceptionally; check {@link TransferResult#isSuccess}. If the deposit fails after the
+     * CloudCoins were withdrawn, they are kept in {@link TransferResult#recoveryFile};
+     * {@link TransferResult#recoveryFileComplete} tells whether it holds the whole stack.
+     * <br>
+     * <h3>Usage</h3>
+     * <p>
+     * <code>cloudBankUtils.transfer(toPublicURL, amount, options).thenAccept(result -> {</code>
+     * <br>
+     * <code>// This code runs after the transfer has finished</code>
+     * <br>
+     * <code>}</code>
+     *
+     * @param toPublicURL the url of the CloudService server the CloudCoins are being sent to. Do not include
+     *                    "https://".
+     * @param amount      the amount of CloudCoins to be transferred
+     * @param options     the {@link TransferOptions} of the transfer
+     * @returns {@link CompletableFuture} that completes with the {@link TransferResult}
+     */
+    public CompletableFuture<TransferResult> transfer(String toPublicURL, int amount, TransferOptions options) {
+        String withdrawUrl = origin + keys.publickey + "/withdraw_account.aspx";
+        HostGuard guard = factory.getHostGuard(HostGuard.hostOf(withdrawUrl));
+        CallRecorder recorder = new CallRecorder(factory.getMetrics(), CloudOperation.WITHDRAW, guard.getHost());
+        if (!guard.getBreaker().allowRequest()) {
+            CallRejectedException rejected =
+                    new CallRejectedException(guard.getHost(), CallRejectedException.Reason.CIRCUIT_OPEN);
+            recorder.finish(rejected);
+            return CompletableFuture.completedFuture(new TransferResult(toPublicURL, amount, null, null, rejected));
+        }
+
+        StackSpool spool;
+        try {
+            String prefix = amount + ".CloudCoin.Transfer";
+            Path spoolFile = options.spoolDirectory != null
+                    ? Files.createTempFile(options.spoolDirectory, prefix, ".stack")
+                    : Files.createTempFile(prefix, ".stack");
+            spool = new StackSpool(spoolFile, keys.privatekey);
+        } catch (IOException e) {
+            guard.getBreaker().onIgnored();
+            recorder.finish(e);
+            return CompletableFuture.completedFuture(new TransferResult(toPublicURL, amount, null, null, e));
+        }
+
+        StackTransfer transfer = new StackTransfer(toPublicURL, amount, spool,
+                body -> deposit(client.preparePost(origin + toPublicURL + "/deposit_one_stack.aspx")
+                        .setHeader("Content-Type", StackFileBody.CONTENT_TYPE)
+                        .setBody(body)), gson);
+        BoundRequestBuilder withdrawal = client.preparePost(withdrawUrl)
+                .addFormParam("amount", Integer.toString(amount))
+                .addFormParam("pk", keys.privatekey);
+        // The handler feeds a single spool, so the withdrawal only takes the deadline of the policy, never a retry.
+        int timeout = callPolicy.getTimeout(CloudOperation.WITHDRAW);
+        if (timeout > 0)
+            withdrawal.setRequestTimeout(timeout);
+        long maxWait = timeout > 0 ? TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE;
+        guard.acquire(CloudOperation.WITHDRAW, maxWait, factory.getScheduler())
+                .whenComplete((permit, t) -> {
+                    if (t != null) {
+                        guard.getBreaker().onIgnored();
+                        recorder.finish(t);
+                        transfer.onThrowable(t);
+                        return;
+                    }
+                    long sentAt = System.nanoTime();
+                    recorder.record(changesBalance(withdrawal.execute(recorder.meter(transfer)).toCompletableFuture()))
+                            .whenComplete((done, e) -> guard.complete(CloudOperation.WITHDRAW, sentAt, e));
+                });
+        return transfer.result();
+    }
+
+    /**
+     * Runs many transfers from this account, up to {@link TransferOptions#maxConcurrency} at a time. Each transfer is
+     * made with {@link #transfer(String, int, TransferOptions)}, and its outcome is passed to
+     * {@link TransferOptions#listener} as soon as it is known.
+     *
+     * @param transfers the transfers to run
+     * @param options   the {@link TransferOptions} of the run
+     * @returns {@link CompletableFuture} that completes with every {@link TransferResult}, in the order of
+     * {@code transfers}
+     * @throws IllegalArgumentException if any of the transfers is null
+     */
+    public CompletableFuture<List<TransferResult>> transferAll(List<Transfer> transfers, TransferOptions options) {
+        return new BulkTransfer(this, transfers, options).start();
     }
 
     /**
@@ -717,53 +982,36 @@ public class CloudBankUtils implements ICloudBankUtils {
      * @param memo         a short note describing the payment
      * @returns {@link CompletableFuture}
      */
+    @SuppressWarnings("try")
     public CompletableFuture<Object> writeCheck(int amountToSend, String payTo, String signedBy, String memo) {
-        CompletableFuture<Object> clientCall = client.preparePost("https://" + keys.publickey + "/write_check.aspx")
-                .addFormParam("pk", keys.privatekey)
-                .addFormParam("amount", Integer.toString(amountToSend))
-                .addFormParam("payto", payTo)
-                .addFormParam("signby", signedBy)
-                .addFormParam("Memo", memo)
-                .execute(new AsyncHandler<>() {
-                    private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
-                    private Integer status;
-
-                    @Override
-                    public State onStatusReceived(HttpResponseStatus responseStatus) {
-                        builder.accumulate(responseStatus);
-                        status = responseStatus.getStatusCode();
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onHeadersReceived(HttpResponseHeaders headers) {
-                        builder.accumulate(headers);
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
-                        builder.accumulate(bodyPart);
-                        return State.CONTINUE;
-                    }
-
-                    @Override
-                    public Integer onCompleted() {
-                        String response = builder.build().getResponseBody();
-                        DepositResponse cbf = gson.fromJson(response, DepositResponse.class);
-                        System.out.println(cbf.message);
-                        return status;
-                    }
-
-                    @Override
-                    public void onThrowable(Throwable t) {
-                        System.out.println("Exception: " + t.getMessage());
-                        System.out.println("Check your connection, or your public key");
-                    }
-                })
-                .toCompletableFuture();
+        return legacy(createCheck(amountToSend, payTo, signedBy, memo).thenAccept(depositResponse -> {
+            if (LOG.isInfoEnabled()) {
+                try (LogContext context = LogContext.of(CloudOperation.WRITE_CHECK, keys.publickey, null)) {
+                    LOG.info("Check written: {}", depositResponse.message);
+                }
+            }
+        }), CloudOperation.WRITE_CHECK, keys.publickey, null, CONNECTION_HINT);
+    }
 
-        return clientCall;
+    /**
+     * Creates a digital check containing CloudCoins, and returns the server's response. The url of the check is
+     * returned in {@link DepositResponse#message}. Nothing is cached in this object.
+     *
+     * @param amountToSend the amount of CloudCoins to be transferred
+     * @param payTo        the name of the recipient
+     * @param signedBy     the name of the sender
+     * @param memo         a short note describing the payment
+     * @returns {@link CompletableFuture} that completes with the server's {@link DepositResponse}
+     */
+    public CompletableFuture<DepositResponse> createCheck(int amountToSend, String payTo, String signedBy,
+                                                          String memo) {
+        return changesBalance(execute(CloudOperation.WRITE_CHECK,
+                client.preparePost(origin + keys.publickey + "/write_check.aspx")
+                        .addFormParam("pk", keys.privatekey)
+                        .addFormParam("amount", Integer.toString(amountToSend))
+                        .addFormParam("payto", payTo)
+                        .addFormParam("signby", signedBy)
+                        .addFormParam("Memo", memo), DEPOSIT_RESPONSE));
     }
 
     /**
@@ -788,61 +1036,154 @@ public class CloudBankUtils implements ICloudBankUtils {
      * @returns {@link CompletableFuture}
      */
     public CompletableFuture<Object> cashCheck(String checkId) {
-        CompletableFuture<Object> clientCall = client.preparePost(
-                "https://" + keys.publickey + "/checks.aspx?id=" + checkId)
-                .addFormParam("pk", keys.privatekey)
-                .execute(new AsyncHandler<>() {
-                    private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
-                    private Integer status;
-
-                    @Override
-                    public State onStatusReceived(HttpResponseStatus responseStatus) {
-                        builder.accumulate(responseStatus);
-                        status = responseStatus.getStatusCode();
-                        return State.CONTINUE;
-                    }
+        return legacy(redeemCheck(checkId).thenAccept(stack -> rawStackForDeposit = stack),
+                CloudOperation.CASH_CHECK, keys.publickey, null, CONNECTION_HINT);
+    }
 
-                    @Override
-                    public State onHeadersReceived(HttpResponseHeaders headers) {
-                        builder.accumulate(headers);
-                        return State.CONTINUE;
-                    }
+    /**
+     * Cashes a CloudCoin check and returns its CloudCoin stack. The stack can then be deposited with
+     * {@link #depositStack(String, String)}. Nothing is cached in this object.
+     *
+     * @param checkId the ID of the check
+     * @returns {@link CompletableFuture} that completes with the CloudCoin stack of the check
+     */
+    public CompletableFuture<String> redeemCheck(String checkId) {
+        return changesBalance(execute(CloudOperation.CASH_CHECK,
+                client.preparePost(origin + keys.publickey + "/checks.aspx?id=" + checkId)
+                        .addFormParam("pk", keys.privatekey), CHECK_STACK));
+    }
 
-                    @Override
-                    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
-                        builder.accumulate(bodyPart);
-                        return State.CONTINUE;
-                    }
+    /**
+     * Sends a request and decodes the server's response with {@code decoder} once it has been received. The
+     * returned future completes exceptionally with a {@link CloudBankException} if the server answers with an
+     * HTTP error, or if {@code decoder} rejects the response.
+     *
+     * @param operation the kind of call, which decides its deadline and retries
+     * @param request   the request to send
+     * @param decoder   converts the response body into the result of the call
+     * @returns {@link CompletableFuture}
+     */
+    private <T> CompletableFuture<T> execute(CloudOperation operation, BoundRequestBuilder request,
+                                             CloudResponseHandler.Decoder<T> decoder) {
+        return call(operation, request, () -> new CloudResponseHandler<>(gson, decoder, maxResponseBodySize));
+    }
 
-                    @Override
-                    public Integer onCompleted() {
-                        String response = builder.build().getResponseBody();
-                        FailResponse failResponse = gson.fromJson(response, FailResponse.class);
-                        if (null == failResponse.message) {
-                            rawStackForDeposit = response;
-                        } else {
-                            System.out.println(failResponse.message);
-                        }
-                        return status;
-                    }
+    /**
+     * Sends a request under the factory's {@link CallPolicy}, and through the circuit breaker and bulkhead of its
+     * host. The call is measured for the factory's {@link CloudBankMetrics}. Every server call goes through this
+     * method or {@link #send}, apart from the withdrawal half of {@link #transfer}.
+     *
+     * @param operation the kind of call, which decides its deadline and retries
+     * @param request   the request to send; it is built once and sent unchanged by every attempt
+     * @param handlers  creates a new handler for each attempt
+     * @returns {@link CompletableFuture}
+     */
+    private <T> CompletableFuture<T> call(CloudOperation operation, BoundRequestBuilder request,
+                                          Supplier<? extends AsyncHandler<T>> handlers) {
+        Request built = request.build();
+        CallRecorder recorder = new CallRecorder(factory.getMetrics(), operation, HostGuard.hostOf(built.getUrl()));
+        return recorder.record(send(operation, built, recorder, handlers));
+    }
 
-                    @Override
-                    public void onThrowable(Throwable t) {
-                        System.out.println("Exception: " + t.getMessage());
-                        System.out.println("Check your connection, or your public key");
-                    }
-                })
-                .toCompletableFuture();
+    /**
+     * Sends a request like {@link #call}, but leaves finishing {@code recorder} to the caller.
+     */
+    private <T> CompletableFuture<T> send(CloudOperation operation, Request request, CallRecorder recorder,
+                                          Supplier<? extends AsyncHandler<T>> handlers) {
+        String host = HostGuard.hostOf(request.getUrl());
+        return new PolicyCall<>(client, callPolicy, operation, request, () -> recorder.meter(handlers.get()),
+                factory.getScheduler(), factory.getHostGuard(host)).start();
+    }
+
+    /**
+     * Reads the receipt file of a deposit. {@link #getReceipt(String)}, {@link #getReceiptSummary} and
+     * {@link #getReceiptTable} share one request when they ask for the same receipt at the same time.
+     */
+    private <T> CompletableFuture<T> executeReceipt(String receiptNumber, CloudResponseHandler.Decoder<T> decoder) {
+        String url = origin + keys.publickey + "/" + keys.privatekey + "/Receipts/" + receiptNumber + ".json";
+        return executeShared(CloudOperation.GET_RECEIPT, url, () -> client.prepareGet(url), decoder);
+    }
 
-        return clientCall;
+    /**
+     * Sends a read-only request, or joins an identical one that is already in flight, and decodes the response with
+     * {@code decoder}. Every caller decodes the shared response separately.
+     *
+     * @param operation the kind of call, which decides its deadline and retries
+     * @param key       identifies the call; it must include everything that changes the server's response
+     * @param request   prepares the request; only called if no identical request is in flight
+     * @param decoder   converts the response body into the result of the call
+     * @returns {@link CompletableFuture}
+     */
+    private <T> CompletableFuture<T> executeShared(CloudOperation operation, String key,
+                                                   Supplier<BoundRequestBuilder> request,
+                                                   CloudResponseHandler.Decoder<T> decoder) {
+        if (coalescer == null)
+            return execute(operation, request.get(), decoder);
+        // The caller that sends the request records the call once it has decoded the response, so a refusal that
+        // comes back as a successful HTTP response is recorded as a failure. Callers that join it record nothing.
+        CallRecorder[] sender = new CallRecorder[1];
+        CompletableFuture<T> result = coalescer.join(key, () -> {
+            Request built = request.get().build();
+            sender[0] = new CallRecorder(factory.getMetrics(), operation, HostGuard.hostOf(built.getUrl()));
+            return send(operation, built, sender[0],
+                    () -> new CloudResponseHandler<>(gson, EXCHANGE, maxResponseBodySize));
+        }).thenApply(exchange -> decoder.decode(gson, exchange.status, exchange.body));
+        return sender[0] == null ? result : sender[0].record(result);
     }
 
+    /**
+     * Drops the cached balance once {@code call} completes. The balance is dropped even if the call fails, as the
+     * server may have changed the account before the failure was reported.
+     */
+    private <T> CompletableFuture<T> changesBalance(CompletableFuture<T> call) {
+        return call.whenComplete((result, t) -> balanceCache.invalidate());
+    }
 
     /**
-     * AsyncThreadStopper is used to prevent chained server calls from running if a server call is not successful.
+     * Adapts a stateless call to the older methods, whose futures complete with the HTTP status of the call and
+     * log the server's message when the call is refused. The operation, host and receipt number are put in the
+     * logging MDC; see {@link LogContext}.
+     */
+    @SuppressWarnings("try")
+    private CompletableFuture<Object> legacy(CompletableFuture<?> call, CloudOperation operation, String host,
+                                             String receipt, String connectionHint) {
+        return call.handle((result, t) -> {
+            if (t == null)
+                return SUCCESS_STATUS;
+            Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            if (LOG.isWarnEnabled()) {
+                try (LogContext context = LogContext.of(operation, host, receipt)) {
+                    if (cause instanceof CloudBankException)
+                        LOG.warn("CloudServer refused the call: {}", redact(cause.getMessage()));
+                    else
+                        LOG.warn("Call failed: {}. {}", redact(String.valueOf(cause)), connectionHint);
+                }
+            }
+            if (cause instanceof CloudBankException)
+                return ((CloudBankException) cause).getHttpStatus();
+            throw new CompletionException(cause);
+        });
+    }
+
+    /**
+     * Replaces the private key of the account in {@code text}, so that it can be logged.
+     */
+    private String redact(String text) {
+        if (text == null || keys.privatekey == null || keys.privatekey.isEmpty())
+            return text;
+        return text.replace(keys.privatekey, BankKeys.REDACTED);
+    }
+
+    /**
+     * Releases the connection pool used by this object. If this object was created by a
+     * {@link CloudBankClientFactory}, the shared pool stays open and must be closed through the factory.
+     *
+     * @throws IOException if the connection pool fails to shut down
      */
-    private class AsyncThreadStopper {
-        public volatile boolean stopThread;
+    @Override
+    public void close() throws IOException {
+        if (ownsFactory)
+            factory.close();
     }
 
 
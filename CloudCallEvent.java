@@ -0,0 +1,50 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * {@code CloudCallEvent} is the JDK Flight Recorder event of one server call. It is recorded for every call while a
+ * recording is running, whatever {@link CloudBankMetrics} the factory uses, so the SDK's calls show up next to the
+ * rest of a production profile. The event costs almost nothing while no recording is running.
+ */
+@Name("CloudCoinJavaSDK.Call")
+@Label("CloudCoin Call")
+@Category({"CloudCoin", "Java SDK"})
+@Description("A server call made by CloudBankUtils, including every retry and hedge")
+@StackTrace(false)
+final class CloudCallEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Host")
+    String host;
+
+    @Label("Attempts")
+    int attempts;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    long bytesSent;
+
+    @Label("Bytes Received")
+    @DataAmount
+    long bytesReceived;
+
+    @Label("Error")
+    @Description("FailResponse status, HTTP status or exception of a failed call")
+    String error;
+}
@@ -0,0 +1,80 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code CloudOperation} names each kind of CloudService server call. A {@link CallPolicy} uses it to choose the
+ * deadline of a call, and whether the call is safe to retry.
+ */
+public enum CloudOperation {
+
+    /**
+     * Reads the balance of an account, as in {@link CloudBankUtils#getBankTotal}.
+     */
+    SHOW_COINS("show_coins", true),
+
+    /**
+     * Deposits a stack, as in {@link CloudBankUtils#depositStack(String, String)}.
+     */
+    DEPOSIT("deposit_one_stack", false),
+
+    /**
+     * Reads the receipt of a deposit, as in {@link CloudBankUtils#getReceipt(String)}.
+     */
+    GET_RECEIPT("get_receipt", true),
+
+    /**
+     * Withdraws a stack, as in {@link CloudBankUtils#withdrawStack}.
+     */
+    WITHDRAW("withdraw_account", false),
+
+    /**
+     * Writes a check, as in {@link CloudBankUtils#createCheck}.
+     */
+    WRITE_CHECK("write_check", false),
+
+    /**
+     * Cashes a check, as in {@link CloudBankUtils#redeemCheck}.
+     */
+    CASH_CHECK("checks", false);
+
+
+    // Fields
+
+    private final String endpoint;
+    private final boolean idempotent;
+
+
+    // Constructor
+
+    CloudOperation(String endpoint, boolean idempotent) {
+        this.endpoint = endpoint;
+        this.idempotent = idempotent;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the name of the server endpoint, without the ".aspx" extension.
+     *
+     * @returns {@link String}
+     */
+    public String endpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Returns true if repeating the call cannot change an account, so it is safe to retry or hedge.
+     *
+     * @returns boolean
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+}
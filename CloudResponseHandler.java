@@ -0,0 +1,117 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import com.google.gson.Gson;
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+
+/**
+ * {@code CloudResponseHandler} is the {@link AsyncHandler} used by every {@link CloudBankUtils} server call that
+ * returns a decoded result. It collects the response bytes in a {@link ResponseBody} and hands them to a
+ * {@link Decoder} when the response is complete.
+ * <p>
+ * <br>
+ * A response larger than {@code maxBodySize} is aborted as soon as the limit is passed, so a misbehaving server
+ * cannot exhaust the heap.
+ */
+class CloudResponseHandler<T> implements AsyncHandler<T> {
+
+
+    // Fields
+
+    private final Gson gson;
+    private final Decoder<T> decoder;
+    private final int maxBodySize;
+
+    private int status;
+    private long contentLength = -1;
+    private long retryAfter = -1;
+    private ResponseBody body;
+    private boolean tooLarge;
+
+
+    // Constructor
+
+    /**
+     * @param gson        the Gson instance used to decode the body
+     * @param decoder     converts the body of a successful response into the result of the call
+     * @param maxBodySize the largest body, in bytes, that is accepted
+     */
+    CloudResponseHandler(Gson gson, Decoder<T> decoder, int maxBodySize) {
+        this.gson = gson;
+        this.decoder = decoder;
+        this.maxBodySize = maxBodySize;
+    }
+
+
+    // Methods
+
+    @Override
+    public State onStatusReceived(HttpResponseStatus responseStatus) {
+        status = responseStatus.getStatusCode();
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpResponseHeaders headers) {
+        String length = headers.getHeaders().get("Content-Length");
+        if (length != null) {
+            try {
+                contentLength = Long.parseLong(length.trim());
+            } catch (NumberFormatException ignored) {
+                // Treated as a response of unknown length.
+            }
+        }
+        retryAfter = RateLimiter.parseRetryAfter(headers.getHeaders().get("Retry-After"));
+        if (contentLength > maxBodySize) {
+            tooLarge = true;
+            return State.ABORT;
+        }
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
+        if (body == null)
+            body = new ResponseBody(contentLength);
+        if ((long) body.length() + bodyPart.length() > maxBodySize) {
+            tooLarge = true;
+            return State.ABORT;
+        }
+        body.append(bodyPart.getBodyByteBuffer());
+        return State.CONTINUE;
+    }
+
+    @Override
+    public T onCompleted() {
+        if (tooLarge)
+            throw new CloudBankException(status, "CloudServer response is larger than " + maxBodySize + " bytes");
+        if (body == null)
+            body = new ResponseBody(0);
+        if (status / 100 != 2)
+            throw body.failure(gson, status, retryAfter);
+        return decoder.decode(gson, status, body);
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+        // The future returned by AsyncHttpClient completes exceptionally with t.
+    }
+
+
+    /**
+     * Decoder converts the body of a successful HTTP response into the result of a server call. A decoder may
+     * throw a {@link CloudBankException} if the body is a refusal rather than the expected result.
+     */
+    interface Decoder<T> {
+        T decode(Gson gson, int status, ResponseBody body);
+    }
+}
@@ -0,0 +1,89 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code CoinStatus} is the status of a CloudCoin in a receipt. Each status has a one byte {@link #code}, which
+ * {@link ReceiptTable} stores in place of the status String.
+ */
+public enum CoinStatus {
+
+    AUTHENTIC("authentic"),
+    FRACKED("fracked"),
+    COUNTERFEIT("counterfeit"),
+    LOST("lost"),
+    UNKNOWN(null);
+
+
+    // Fields
+
+    private static final CoinStatus[] BY_CODE = values();
+
+    private final String status;
+
+
+    // Constructor
+
+    CoinStatus(String status) {
+        this.status = status;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the status as the CloudService writes it in a receipt, or null for {@link #UNKNOWN}.
+     *
+     * @returns {@link String}
+     */
+    public String status() {
+        return status;
+    }
+
+    /**
+     * Returns the one byte code of this status.
+     *
+     * @returns byte
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Returns the status with the code {@code code}.
+     *
+     * @param code a code returned by {@link #code}
+     * @returns {@link CoinStatus}
+     */
+    public static CoinStatus fromCode(byte code) {
+        return BY_CODE[code];
+    }
+
+    /**
+     * Returns the status matching a receipt's status String, or {@link #UNKNOWN} if it is not recognised.
+     *
+     * @param status the status from a receipt, such as "authentic"
+     * @returns {@link CoinStatus}
+     */
+    public static CoinStatus fromStatus(String status) {
+        if (status == null)
+            return UNKNOWN;
+        switch (status) {
+            case "authentic":
+                return AUTHENTIC;
+            case "fracked":
+                return FRACKED;
+            case "counterfeit":
+                return COUNTERFEIT;
+            case "lost":
+                return LOST;
+            default:
+                return UNKNOWN;
+        }
+    }
+}
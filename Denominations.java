@@ -0,0 +1,173 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.stream.IntStream;
+
+/**
+ * {@code Denominations} calculates the denomination of CloudCoins from their serial numbers.
+ * <p>
+ * <br>
+ * Serial numbers run from 1 to 16,777,216 and are split into blocks of 2,097,152. Serial numbers in the first block
+ * are ones, the second fives, the third twenty-fives, the fourth to seventh hundreds, and the eighth
+ * two-hundred-fifties. A denomination is found by looking up the block number in a table, with no branches.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>int value = Denominations.of(sn);
+ * <br>
+ * long total = Denominations.sumDenominations(serialNumbers);</code>
+ */
+public final class Denominations {
+
+
+    // Fields
+
+    public static final int MIN_SERIAL_NUMBER = 1;
+    public static final int MAX_SERIAL_NUMBER = 16777216;
+
+    /**
+     * The denominations of CloudCoin notes, in the order used by {@link #histogram}.
+     */
+    private static final int[] VALUES = {1, 5, 25, 100, 250};
+
+    private static final int BLOCK_SHIFT = 21;
+    private static final int[] VALUE_BY_BLOCK = {1, 5, 25, 100, 100, 100, 100, 250};
+    private static final int[] INDEX_BY_BLOCK = {0, 1, 2, 3, 3, 3, 3, 4};
+
+    // Arrays at least this long are summed in parallel.
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int PARALLEL_CHUNK = 1 << 14;
+
+
+    // Constructor
+
+    private Denominations() {
+
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the denomination of the CloudCoin with the serial number {@code sn}.
+     *
+     * @param sn the serial number of a CloudCoin note
+     * @returns denomination amount of the CloudCoin
+     * @throws IllegalArgumentException if {@code sn} is not a valid serial number
+     */
+    public static int of(int sn) {
+        return VALUE_BY_BLOCK[block(sn)];
+    }
+
+    /**
+     * Returns the denomination of the CloudCoin with the serial number {@code sn}, or 0 if it is not a valid serial
+     * number. Use it to value rows of a server response, where a counterfeit or lost coin may come without one.
+     *
+     * @param sn the serial number of a CloudCoin note
+     * @returns denomination amount of the CloudCoin, or 0
+     */
+    public static int ofOrZero(int sn) {
+        return isValid(sn) ? VALUE_BY_BLOCK[(sn - 1) >>> BLOCK_SHIFT] : 0;
+    }
+
+    /**
+     * Returns the position of the denomination of {@code sn} in {@link #values}.
+     *
+     * @param sn the serial number of a CloudCoin note
+     * @returns int from 0 to 4
+     * @throws IllegalArgumentException if {@code sn} is not a valid serial number
+     */
+    public static int indexOf(int sn) {
+        return INDEX_BY_BLOCK[block(sn)];
+    }
+
+    /**
+     * Returns true if {@code sn} is a valid CloudCoin serial number.
+     *
+     * @returns boolean
+     */
+    public static boolean isValid(int sn) {
+        // Serial numbers below 1 wrap around to large unsigned values, so one shift checks both ends.
+        return (sn - 1) >>> 24 == 0;
+    }
+
+    /**
+     * Returns the denominations of CloudCoin notes: 1, 5, 25, 100 and 250.
+     *
+     * @returns int[]
+     */
+    public static int[] values() {
+        return VALUES.clone();
+    }
+
+    /**
+     * Returns the total value of the CloudCoins with the serial numbers {@code sns}. Large arrays are summed in
+     * parallel on the common fork-join pool.
+     *
+     * @param sns the serial numbers of CloudCoin notes
+     * @returns the sum of their denominations
+     * @throws IllegalArgumentException if any serial number is not valid
+     */
+    public static long sumDenominations(int[] sns) {
+        if (sns.length < PARALLEL_THRESHOLD)
+            return sum(sns, 0, sns.length);
+        return IntStream.range(0, chunks(sns.length)).parallel()
+                .mapToLong(chunk -> sum(sns, chunk * PARALLEL_CHUNK,
+                        Math.min(sns.length, (chunk + 1) * PARALLEL_CHUNK)))
+                .sum();
+    }
+
+    /**
+     * Counts the CloudCoins of each denomination. Element {@code i} of the result is the number of notes whose
+     * denomination is {@code values()[i]}. Large arrays are counted in parallel on the common fork-join pool.
+     *
+     * @param sns the serial numbers of CloudCoin notes
+     * @returns long[] of five counts
+     * @throws IllegalArgumentException if any serial number is not valid
+     */
+    public static long[] histogram(int[] sns) {
+        if (sns.length < PARALLEL_THRESHOLD)
+            return histogram(sns, 0, sns.length);
+        return IntStream.range(0, chunks(sns.length)).parallel()
+                .mapToObj(chunk -> histogram(sns, chunk * PARALLEL_CHUNK,
+                        Math.min(sns.length, (chunk + 1) * PARALLEL_CHUNK)))
+                .reduce(new long[VALUES.length], Denominations::add);
+    }
+
+    private static int block(int sn) {
+        if (!isValid(sn))
+            throw new IllegalArgumentException("Invalid CloudCoin serial number: " + sn);
+        return (sn - 1) >>> BLOCK_SHIFT;
+    }
+
+    private static long sum(int[] sns, int from, int to) {
+        long total = 0;
+        for (int i = from; i < to; i++)
+            total += VALUE_BY_BLOCK[block(sns[i])];
+        return total;
+    }
+
+    private static long[] histogram(int[] sns, int from, int to) {
+        long[] counts = new long[VALUES.length];
+        for (int i = from; i < to; i++)
+            counts[INDEX_BY_BLOCK[block(sns[i])]]++;
+        return counts;
+    }
+
+    private static long[] add(long[] a, long[] b) {
+        long[] counts = new long[VALUES.length];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = a[i] + b[i];
+        return counts;
+    }
+
+    private static int chunks(int length) {
+        return (length + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+    }
+}
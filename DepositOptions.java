@@ -0,0 +1,70 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * {@code DepositOptions} configures {@link CloudBankUtils#depositDirectory}. Every field has a default, so only the
+ * settings that differ need to be changed.
+ *
+ * <h3>Usage</h3>
+ * <p>
+ * <code>DepositOptions options = new DepositOptions();
+ * <br>
+ * options.maxConcurrency = 32;
+ * <br>
+ * options.listener = result -> System.out.println(result.file + " " + result.isSuccess());</code>
+ */
+public class DepositOptions {
+
+
+    // Fields
+
+    /**
+     * The largest number of deposits in flight at once. The directory is read no faster than deposits complete.
+     */
+    public int maxConcurrency = 8;
+
+    /**
+     * The glob pattern of the stack files to deposit.
+     */
+    public String glob = "*.stack";
+
+    /**
+     * The directory successfully deposited files are moved to. If null, a {@code done} folder inside the deposited
+     * directory is used. Files that fail stay where they are, so the directory can be deposited again.
+     */
+    public Path doneDirectory;
+
+    /**
+     * The url of the CloudService server the CloudCoins are sent to. Do not include "https://". If null, the server
+     * that the {@link CloudBankUtils} holds the keys for is used.
+     */
+    public String toPublicURL;
+
+    /**
+     * Called with the outcome of each file as soon as it is known. May be null.
+     */
+    public Consumer<DepositResult> listener;
+
+    /**
+     * Runs the directory scan and moves deposited files. If null, the scan runs on its own thread and files are
+     * moved on the common fork-join pool. With a single-thread executor, files are moved once the scan is done.
+     */
+    public Executor executor;
+
+
+    // Constructor
+
+    public DepositOptions() {
+
+    }
+}
@@ -0,0 +1,182 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code DepositPublisher} deposits the stack files of an upstream publisher and publishes a {@link DepositResult}
+ * for each, for {@link CloudBankUtils#publishDeposits}. A file is only asked for from upstream when the subscriber
+ * has asked for its result and fewer than {@link DepositOptions#maxConcurrency} deposits are in flight, so no
+ * request is sent, and no file opened, ahead of the subscriber's demand.
+ * <p>
+ * <br>
+ * Results are published in the order the deposits finish. Files are not moved after they are deposited.
+ */
+final class DepositPublisher implements Flow.Publisher<DepositResult> {
+
+
+    // Fields
+
+    private final CloudBankUtils cloudBankUtils;
+    private final Flow.Publisher<Path> stackFiles;
+    private final DepositOptions options;
+
+
+    // Constructor
+
+    DepositPublisher(CloudBankUtils cloudBankUtils, Flow.Publisher<Path> stackFiles, DepositOptions options) {
+        this.cloudBankUtils = cloudBankUtils;
+        this.stackFiles = stackFiles;
+        this.options = options;
+    }
+
+
+    // Methods
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super DepositResult> subscriber) {
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        stackFiles.subscribe(subscription.upstream);
+    }
+
+
+    private final class Subscription extends DrainSubscription<DepositResult> {
+
+        final Upstream upstream = new Upstream();
+
+        private final int maxConcurrency = Math.max(1, options.maxConcurrency);
+        private final Executor executor = options.executor != null ? options.executor : ForkJoinPool.commonPool();
+        private final Queue<DepositResult> results = new ConcurrentLinkedQueue<>();
+        // Files asked for from upstream, deposits in flight, and results not yet published. Together they never
+        // exceed the subscriber's demand, and the first two never exceed maxConcurrency.
+        private final AtomicInteger asked = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        private volatile Flow.Subscription files;
+        private volatile boolean filesDone;
+        private volatile Throwable filesError;
+
+        Subscription(Flow.Subscriber<? super DepositResult> subscriber) {
+            super(subscriber);
+        }
+
+        @Override
+        void onCancel() {
+            Flow.Subscription current = files;
+            if (current != null)
+                current.cancel();
+        }
+
+        @Override
+        void emit() {
+            long emitted = 0;
+            long wanted = demand();
+            DepositResult result;
+            while (emitted < wanted && !isFinished() && (result = results.poll()) != null) {
+                waiting.decrementAndGet();
+                subscriber.onNext(result);
+                emitted++;
+            }
+            produced(emitted);
+            if (isFinished())
+                return;
+
+            if (filesDone && inFlight.get() == 0 && results.isEmpty()) {
+                finish(filesError);
+                return;
+            }
+
+            Flow.Subscription current = files;
+            if (current == null || filesDone)
+                return;
+            int started = asked.get() + inFlight.get();
+            long more = Math.min(demand() - started - waiting.get(), maxConcurrency - started);
+            if (more > 0) {
+                asked.addAndGet((int) more);
+                current.request(more);
+            }
+        }
+
+        private void deposit(Path file) {
+            CompletableFuture<DepositResponse> call;
+            try {
+                call = options.toPublicURL != null
+                        ? cloudBankUtils.depositStack(file, options.toPublicURL)
+                        : cloudBankUtils.depositStack(file);
+            } catch (RuntimeException e) {
+                call = new CompletableFuture<>();
+                call.completeExceptionally(e);
+            }
+            // The subscriber is called from the executor, never from a Netty thread.
+            call.whenCompleteAsync((response, t) -> {
+                // Counted as waiting before it leaves inFlight, so no extra file is asked for in between.
+                waiting.incrementAndGet();
+                results.add(t == null ? new DepositResult(file, response, null, null)
+                        : new DepositResult(file, null, null, unwrap(t)));
+                inFlight.decrementAndGet();
+                drain();
+            }, executor);
+        }
+
+
+        /**
+         * Upstream receives the stack files from the upstream publisher.
+         */
+        private final class Upstream implements Flow.Subscriber<Path> {
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                if (files != null || isFinished()) {
+                    subscription.cancel();
+                    return;
+                }
+                files = subscription;
+                drain();
+            }
+
+            @Override
+            public void onNext(Path file) {
+                inFlight.incrementAndGet();
+                asked.decrementAndGet();
+                if (isFinished()) {
+                    inFlight.decrementAndGet();
+                    return;
+                }
+                deposit(file);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                filesError = t;
+                filesDone = true;
+                drain();
+            }
+
+            @Override
+            public void onComplete() {
+                filesDone = true;
+                drain();
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+}
@@ -0,0 +1,63 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.nio.file.Path;
+
+/**
+ * {@code DepositResult} contains the outcome of depositing one stack file with
+ * {@link CloudBankUtils#depositDirectory}.
+ */
+public class DepositResult {
+
+
+    // Fields
+
+    /**
+     * The stack file that was deposited.
+     */
+    public final Path file;
+
+    /**
+     * The server's response, or null if the deposit failed.
+     */
+    public final DepositResponse response;
+
+    /**
+     * Where the file was moved to after a successful deposit, or null if it was not moved.
+     */
+    public final Path movedTo;
+
+    /**
+     * Why the deposit failed, or why the file could not be moved after a successful deposit. Null if neither
+     * happened.
+     */
+    public final Throwable error;
+
+
+    // Constructor
+
+    public DepositResult(Path file, DepositResponse response, Path movedTo, Throwable error) {
+        this.file = file;
+        this.response = response;
+        this.movedTo = movedTo;
+        this.error = error;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns true if the server accepted the stack.
+     *
+     * @returns boolean
+     */
+    public boolean isSuccess() {
+        return response != null;
+    }
+}
@@ -0,0 +1,55 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code DepositSummary} contains the totals of a {@link CloudBankUtils#depositDirectory} run. Successful files are
+ * only counted; the outcome of every file is reported to {@link DepositOptions#listener}.
+ */
+public class DepositSummary {
+
+
+    // Fields
+
+    public final int filesDeposited;
+    public final int filesFailed;
+    /**
+     * The number of files that were deposited but could not be moved to the done folder. They are counted in
+     * {@link #filesDeposited} too, and stay in the directory, so a later run deposits them again unless they are
+     * moved by hand.
+     */
+    public final int filesNotMoved;
+
+    /**
+     * The outcome of every file that failed to deposit.
+     */
+    public final List<DepositResult> failures;
+    /**
+     * The outcome of every file that was deposited but not moved, with the reason in {@link DepositResult#error}.
+     */
+    public final List<DepositResult> notMoved;
+
+
+    // Constructor
+
+    public DepositSummary(int filesDeposited, int filesFailed, List<DepositResult> failures) {
+        this(filesDeposited, filesFailed, failures, 0, Collections.emptyList());
+    }
+
+    public DepositSummary(int filesDeposited, int filesFailed, List<DepositResult> failures, int filesNotMoved,
+                          List<DepositResult> notMoved) {
+        this.filesDeposited = filesDeposited;
+        this.filesFailed = filesFailed;
+        this.failures = failures;
+        this.filesNotMoved = filesNotMoved;
+        this.notMoved = notMoved;
+    }
+}
@@ -0,0 +1,170 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code DirectoryDepositor} runs one {@link CloudBankUtils#depositDirectory} call. The directory is read lazily,
+ * and a new deposit only starts once there is a free slot, so no more than {@link DepositOptions#maxConcurrency}
+ * files are open or in flight no matter how many files the directory holds.
+ */
+class DirectoryDepositor {
+
+
+    // Fields
+
+    private final CloudBankUtils cloudBankUtils;
+    private final Path directory;
+    private final DepositOptions options;
+    private final Path doneDirectory;
+    private final Executor executor;
+
+    private final Semaphore slots;
+    private final CompletableFuture<DepositSummary> summary = new CompletableFuture<>();
+    // Starts at one for the directory scan itself, so the summary cannot complete before the scan ends.
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicInteger deposited = new AtomicInteger();
+    private final List<DepositResult> failures = Collections.synchronizedList(new ArrayList<>());
+    private final List<DepositResult> notMoved = Collections.synchronizedList(new ArrayList<>());
+
+
+    // Constructor
+
+    DirectoryDepositor(CloudBankUtils cloudBankUtils, Path directory, DepositOptions options) {
+        this.cloudBankUtils = cloudBankUtils;
+        this.directory = directory;
+        this.options = options;
+        this.doneDirectory = options.doneDirectory != null ? options.doneDirectory : directory.resolve("done");
+        this.executor = options.executor != null ? options.executor : ForkJoinPool.commonPool();
+        this.slots = new Semaphore(Math.max(1, options.maxConcurrency));
+    }
+
+
+    // Methods
+
+    /**
+     * Starts the scan and returns a future that completes once every file has been deposited or has failed.
+     *
+     * @returns {@link CompletableFuture}
+     */
+    CompletableFuture<DepositSummary> start() {
+        if (options.executor != null) {
+            options.executor.execute(this::scan);
+        } else {
+            Thread scanner = new Thread(this::scan, "CloudBank-depositDirectory");
+            scanner.setDaemon(true);
+            scanner.start();
+        }
+        return summary;
+    }
+
+    private void scan() {
+        try {
+            Files.createDirectories(doneDirectory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, options.glob)) {
+                for (Path file : files) {
+                    if (!Files.isRegularFile(file))
+                        continue;
+                    slots.acquire();
+                    pending.incrementAndGet();
+                    deposit(file);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            summary.completeExceptionally(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            summary.completeExceptionally(e);
+        } finally {
+            finishOne();
+        }
+    }
+
+    private void deposit(Path file) {
+        CompletableFuture<DepositResponse> call;
+        try {
+            call = options.toPublicURL != null
+                    ? cloudBankUtils.depositStack(file, options.toPublicURL)
+                    : cloudBankUtils.depositStack(file);
+        } catch (RuntimeException e) {
+            call = new CompletableFuture<>();
+            call.completeExceptionally(e);
+        }
+        // The slot is given back straight away: the scan may be blocked waiting for it on the executor, which would
+        // then never run a release queued behind it.
+        call.whenComplete((response, t) -> slots.release());
+        // Moving the file is blocking I/O, so it is kept off the Netty threads.
+        call.whenCompleteAsync((response, t) -> {
+            try {
+                report(t == null ? moveToDone(file, response) : new DepositResult(file, null, null, unwrap(t)));
+            } finally {
+                finishOne();
+            }
+        }, executor);
+    }
+
+    /**
+     * Moves a deposited file to the done folder, adding a number to its name if the folder already holds a file of
+     * that name, such as a stack deposited by an earlier run.
+     */
+    private DepositResult moveToDone(Path file, DepositResponse response) {
+        String name = file.getFileName().toString();
+        int extension = name.lastIndexOf('.') > 0 ? name.lastIndexOf('.') : name.length();
+        try {
+            for (int copy = 1; ; copy++) {
+                Path target = doneDirectory.resolve(copy == 1 ? name
+                        : name.substring(0, extension) + "-" + copy + name.substring(extension));
+                try {
+                    return new DepositResult(file, response, Files.move(file, target), null);
+                } catch (FileAlreadyExistsException e) {
+                    // Try the next name.
+                }
+            }
+        } catch (IOException e) {
+            return new DepositResult(file, response, null, e);
+        }
+    }
+
+    private void report(DepositResult result) {
+        if (result.isSuccess()) {
+            deposited.incrementAndGet();
+            if (result.movedTo == null)
+                notMoved.add(result);
+        } else {
+            failures.add(result);
+        }
+        if (options.listener != null)
+            options.listener.accept(result);
+    }
+
+    private void finishOne() {
+        if (pending.decrementAndGet() == 0) {
+            List<DepositResult> failed = new ArrayList<>(failures);
+            List<DepositResult> stayed = new ArrayList<>(notMoved);
+            summary.complete(new DepositSummary(deposited.get(), failed.size(), failed, stayed.size(), stayed));
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+}
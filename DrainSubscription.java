@@ -0,0 +1,137 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code DrainSubscription} is the demand bookkeeping shared by the SDK's {@link Flow.Publisher Publishers}. It
+ * counts the items requested by the subscriber, and runs {@link #emit} whenever demand or data may have arrived.
+ * Only one thread runs {@link #emit} at a time, so a subclass can signal its subscriber from there without locks,
+ * as the Reactive Streams rules require.
+ */
+abstract class DrainSubscription<T> implements Flow.Subscription {
+
+
+    // Fields
+
+    final Flow.Subscriber<? super T> subscriber;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private volatile boolean finished;
+    private volatile Throwable invalidRequest;
+
+
+    // Constructor
+
+    DrainSubscription(Flow.Subscriber<? super T> subscriber) {
+        this.subscriber = subscriber;
+    }
+
+
+    // Methods
+
+    @Override
+    public final void request(long n) {
+        if (n <= 0) {
+            invalidRequest = new IllegalArgumentException("Subscription.request needs a positive count, not " + n);
+        } else {
+            requested.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            onRequest();
+        }
+        drain();
+    }
+
+    @Override
+    public final void cancel() {
+        if (!finished) {
+            finished = true;
+            onCancel();
+        }
+    }
+
+    /**
+     * Runs {@link #emit} until no thread has asked for another run in the meantime. A call made while another thread
+     * is emitting returns at once, and that thread runs {@link #emit} again for it.
+     */
+    final void drain() {
+        if (drainRequests.getAndIncrement() != 0)
+            return;
+        do {
+            if (finished)
+                continue;
+            Throwable invalid = invalidRequest;
+            if (invalid != null) {
+                cancel();
+                subscriber.onError(invalid);
+            } else {
+                emit();
+            }
+        } while (drainRequests.decrementAndGet() != 0);
+    }
+
+    /**
+     * Returns the number of items the subscriber has asked for and not yet received.
+     *
+     * @returns long
+     */
+    final long demand() {
+        return requested.get();
+    }
+
+    /**
+     * Records that {@code count} items have been passed to the subscriber.
+     */
+    final void produced(long count) {
+        if (count > 0 && requested.get() != Long.MAX_VALUE)
+            requested.addAndGet(-count);
+    }
+
+    /**
+     * Returns true once the subscription has been cancelled or completed.
+     *
+     * @returns boolean
+     */
+    final boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Completes the subscriber with {@code error}, or normally if it is null. Only called from {@link #emit}.
+     */
+    final void finish(Throwable error) {
+        finished = true;
+        if (error == null)
+            subscriber.onComplete();
+        else
+            subscriber.onError(error);
+    }
+
+    /**
+     * Called on the requesting thread after new demand has been added, before {@link #emit} runs.
+     */
+    void onRequest() {
+
+    }
+
+    /**
+     * Called once when the subscriber cancels, or when an invalid request cancels the subscription.
+     */
+    void onCancel() {
+
+    }
+
+    /**
+     * Passes as many items to the subscriber as it has asked for and are available, and finishes the subscription
+     * once there are no more. Never runs on two threads at once.
+     */
+    abstract void emit();
+}
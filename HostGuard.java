@@ -0,0 +1,167 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@code HostGuard} holds the {@link CircuitBreaker}, {@link Bulkhead} and {@link RateLimiter} of one CloudService
+ * host, and the {@link AdaptiveLimit} that tunes the bulkhead if adaptive concurrency is on. A
+ * {@link CloudBankClientFactory} keeps one guard per host, shared by every account that calls that host.
+ */
+final class HostGuard {
+
+
+    // Fields
+
+    private final String host;
+    private final CircuitBreaker breaker;
+    private final Bulkhead bulkhead;
+    private final AdaptiveLimit adaptiveLimit;
+    private final RateLimiter rateLimiter;
+
+
+    // Constructor
+
+    /**
+     * @param adaptiveLimit tunes {@code bulkhead} from the calls' round trips, or null to keep its limit fixed
+     */
+    HostGuard(String host, CircuitBreaker breaker, Bulkhead bulkhead, AdaptiveLimit adaptiveLimit,
+              RateLimiter rateLimiter) {
+        this.host = host;
+        this.breaker = breaker;
+        this.bulkhead = bulkhead;
+        this.adaptiveLimit = adaptiveLimit;
+        this.rateLimiter = rateLimiter;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the host part of {@code url}, such as {@code bank.cloudcoin.global} for
+     * {@code https://bank.cloudcoin.global/show_coins.aspx}.
+     *
+     * @returns {@link String}
+     */
+    static String hostOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0)
+            end++;
+        return url.substring(start, end);
+    }
+
+    /**
+     * Returns true if {@code failure} shows that the host is unreachable, slow or erroring, rather than that it
+     * answered and refused the call.
+     *
+     * @returns boolean
+     */
+    static boolean isHostFailure(Throwable failure) {
+        Throwable cause = CallPolicy.unwrap(failure);
+        if (cause instanceof CloudBankException)
+            return ((CloudBankException) cause).getHttpStatus() >= 500;
+        return cause instanceof IOException || cause instanceof TimeoutException;
+    }
+
+    /**
+     * Takes a rate limiter token and then a bulkhead permit for a call, without holding a thread while it waits for
+     * either. The returned future fails with a {@link CallRejectedException} if the call would wait for its token
+     * longer than {@code maxWait} or the rate limiter's own longest wait, or if the bulkhead's queue is full.
+     *
+     * @param operation the kind of call
+     * @param maxWait   the longest the call may wait for its token, in nanoseconds
+     * @param scheduler runs the call once its token is due
+     * @returns {@link CompletableFuture} that completes once the call holds a bulkhead permit
+     */
+    CompletableFuture<Void> acquire(CloudOperation operation, long maxWait, ScheduledExecutorService scheduler) {
+        long wait = rateLimiter.reserve(operation, maxWait);
+        if (wait < 0) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new CallRejectedException(host, CallRejectedException.Reason.RATE_LIMITED));
+            return failed;
+        }
+        if (wait == 0)
+            return acquirePermit();
+
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        Runnable acquire = () -> acquirePermit().whenComplete((done, t) -> {
+            if (t == null)
+                permit.complete(null);
+            else
+                permit.completeExceptionally(t);
+        });
+        try {
+            scheduler.schedule(acquire, wait, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // The factory has been closed; the call is sent early rather than left hanging.
+            acquire.run();
+        }
+        return permit;
+    }
+
+    private CompletableFuture<Void> acquirePermit() {
+        return bulkhead.acquire(() -> new CallRejectedException(host, CallRejectedException.Reason.BULKHEAD_FULL));
+    }
+
+    /**
+     * Records the outcome of a call that was sent to the host.
+     *
+     * @param failure why the call failed, or null if it succeeded
+     */
+    void record(Throwable failure) {
+        if (failure == null)
+            breaker.onSuccess();
+        else if (CallPolicy.unwrap(failure) instanceof CancellationException)
+            breaker.onIgnored();
+        else if (isHostFailure(failure))
+            breaker.onFailure();
+        else
+            breaker.onSuccess();
+    }
+
+    /**
+     * Gives back the bulkhead permit of a call that was sent to the host, and records its outcome with the circuit
+     * breaker, the rate limiter and the adaptive limit.
+     *
+     * @param operation the kind of call
+     * @param sentAt    System.nanoTime() when the request was sent
+     * @param failure   why the call failed, or null if it succeeded
+     */
+    void complete(CloudOperation operation, long sentAt, Throwable failure) {
+        bulkhead.release();
+        record(failure);
+        rateLimiter.onResult(operation, failure);
+        if (adaptiveLimit != null)
+            adaptiveLimit.onSample(operation, sentAt, failure);
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+}
@@ -16,6 +16,7 @@ public class Interpretation {
     // Fields
 
     public Receipt receipt;
+    public ReceiptSummary summary;
     public String interpretation;
     public int totalAuthenticNotes;
     public int totalAuthenticCoins;
@@ -0,0 +1,98 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.slf4j.MDC;
+
+/**
+ * {@code LogContext} puts the operation, CloudService host and receipt number of a call into the SLF4J
+ * {@link MDC} for the log statements made inside a {@code try} block, and restores the previous values when the
+ * block ends. Server calls complete on Netty I/O threads, so the context is set around each log statement rather
+ * than held for the whole call.
+ * <p>
+ * <br>
+ * Only open a context once the logger is known to be enabled, so that disabled logging costs nothing. The context
+ * variable is never read, so the enclosing method carries {@code @SuppressWarnings("try")} to keep javac's
+ * {@code -Xlint:try} quiet.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>if (LOG.isDebugEnabled()) {</code>
+ * <br>
+ * <code>    try (LogContext context = LogContext.of(operation, host, null)) {</code>
+ * <br>
+ * <code>        LOG.debug("...");</code>
+ * <br>
+ * <code>    }</code>
+ * <br>
+ * <code>}</code>
+ */
+final class LogContext implements AutoCloseable {
+
+
+    // Fields
+
+    /**
+     * MDC key of the {@link CloudOperation#endpoint} of the call.
+     */
+    static final String OPERATION = "cloudcoin.operation";
+
+    /**
+     * MDC key of the CloudService host of the call.
+     */
+    static final String HOST = "cloudcoin.host";
+
+    /**
+     * MDC key of the receipt number of the call, if it has one.
+     */
+    static final String RECEIPT = "cloudcoin.receipt";
+
+    private final String previousOperation;
+    private final String previousHost;
+    private final String previousReceipt;
+
+
+    // Constructor
+
+    private LogContext(CloudOperation operation, String host, String receipt) {
+        previousOperation = swap(OPERATION, operation == null ? null : operation.endpoint());
+        previousHost = swap(HOST, host);
+        previousReceipt = swap(RECEIPT, receipt);
+    }
+
+
+    // Methods
+
+    /**
+     * Puts the context of a call into the MDC. Null values leave their key unset.
+     *
+     * @param operation the kind of call, or null
+     * @param host      the CloudService host, or null
+     * @param receipt   the receipt number, or null
+     * @returns {@link LogContext} that must be closed
+     */
+    static LogContext of(CloudOperation operation, String host, String receipt) {
+        return new LogContext(operation, host, receipt);
+    }
+
+    @Override
+    public void close() {
+        swap(OPERATION, previousOperation);
+        swap(HOST, previousHost);
+        swap(RECEIPT, previousReceipt);
+    }
+
+    private static String swap(String key, String value) {
+        String previous = MDC.get(key);
+        if (value == null)
+            MDC.remove(key);
+        else
+            MDC.put(key, value);
+        return previous;
+    }
+}
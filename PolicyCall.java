@@ -0,0 +1,228 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * {@code PolicyCall} runs one server call under a {@link CallPolicy}. Each attempt sends the same prepared
+ * {@link Request} with a fresh {@link AsyncHandler}, and its request timeout is cut to the time left before the
+ * call's deadline. Backoff waits and hedges are scheduled on the factory's timer, so no thread sleeps.
+ * <p>
+ * <br>
+ * Every attempt first asks the host's {@link HostGuard}: it is refused while the circuit breaker is open, waits for
+ * its turn while the host is over its rate limit, and waits for a bulkhead permit while the host has too many calls
+ * in flight. The outcome of each attempt is recorded on the breaker and the rate limiter.
+ */
+final class PolicyCall<T> {
+
+
+    // Fields
+
+    private static final Logger LOG = LoggerFactory.getLogger(PolicyCall.class);
+
+    private final AsyncHttpClient client;
+    private final CallPolicy policy;
+    private final CloudOperation operation;
+    private final Request request;
+    private final Supplier<? extends AsyncHandler<T>> handlers;
+    private final ScheduledExecutorService scheduler;
+    private final HostGuard guard;
+
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final boolean hasDeadline;
+    // System.nanoTime() at the deadline, if the call has one.
+    private final long deadline;
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicBoolean hedged = new AtomicBoolean();
+    private final Queue<ListenableFuture<T>> inFlight = new ConcurrentLinkedQueue<>();
+
+
+    // Constructor
+
+    /**
+     * @param client    sends each attempt
+     * @param policy    the {@link CallPolicy} of the call
+     * @param operation the kind of call
+     * @param request   the prepared request, which is sent unchanged apart from its request timeout
+     * @param handlers  creates the handler of each attempt
+     * @param scheduler runs backoff waits and hedges
+     * @param guard     the circuit breaker, rate limiter and bulkhead of the request's host
+     */
+    PolicyCall(AsyncHttpClient client, CallPolicy policy, CloudOperation operation, Request request,
+               Supplier<? extends AsyncHandler<T>> handlers, ScheduledExecutorService scheduler, HostGuard guard) {
+        this.client = client;
+        this.policy = policy;
+        this.operation = operation;
+        this.request = request;
+        this.handlers = handlers;
+        this.scheduler = scheduler;
+        this.guard = guard;
+        int timeout = policy.getTimeout(operation);
+        this.hasDeadline = timeout > 0;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+
+    // Methods
+
+    /**
+     * Sends the first attempt and returns a future that completes with the first successful response, or with the
+     * last failure once no more attempts are allowed. Cancelling the future cancels every attempt in flight.
+     *
+     * @returns {@link CompletableFuture}
+     */
+    CompletableFuture<T> start() {
+        result.whenComplete((value, t) -> {
+            // Cancel the attempts that lost, or every attempt if the caller cancelled the call.
+            ListenableFuture<T> loser;
+            while ((loser = inFlight.poll()) != null)
+                loser.cancel(true);
+        });
+        send(false);
+        return result;
+    }
+
+    private void send(boolean hedge) {
+        if (result.isDone())
+            return;
+        running.incrementAndGet();
+        if (!guard.getBreaker().allowRequest()) {
+            attemptFailed(new CallRejectedException(guard.getHost(), CallRejectedException.Reason.CIRCUIT_OPEN));
+            return;
+        }
+
+        attempts.incrementAndGet();
+        long maxWait = hasDeadline ? deadline - System.nanoTime() : Long.MAX_VALUE;
+        guard.acquire(operation, maxWait, scheduler)
+                .whenComplete((permit, t) -> {
+                    if (t == null) {
+                        dispatch();
+                    } else {
+                        guard.getBreaker().onIgnored();
+                        attemptFailed(t);
+                    }
+                });
+
+        int hedgeDelay = policy.getHedgeDelay(operation);
+        if (!hedge && hedgeDelay > 0 && !hedged.get())
+            schedule(this::hedge, hedgeDelay);
+    }
+
+    /**
+     * Sends an attempt that holds a bulkhead permit. The permit is given back when the attempt completes.
+     */
+    private void dispatch() {
+        Throwable notSent = null;
+        int timeout = 0;
+        if (result.isDone()) {
+            notSent = new CancellationException();
+        } else if (hasDeadline) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0)
+                notSent = new TimeoutException(operation.endpoint() + " call passed its deadline");
+            timeout = (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+
+        ListenableFuture<T> future = null;
+        long sentAt = System.nanoTime();
+        if (notSent == null) {
+            try {
+                Request attempt = timeout > 0
+                        ? new RequestBuilder(request).setRequestTimeout(timeout).build() : request;
+                future = client.executeRequest(attempt, handlers.get());
+            } catch (RuntimeException e) {
+                notSent = e;
+            }
+        }
+        if (future == null) {
+            guard.getBulkhead().release();
+            guard.getBreaker().onIgnored();
+            attemptFailed(notSent);
+            return;
+        }
+
+        ListenableFuture<T> sent = future;
+        inFlight.add(sent);
+        sent.toCompletableFuture().whenComplete((value, t) -> {
+            inFlight.remove(sent);
+            guard.complete(operation, sentAt, t);
+            if (t == null) {
+                running.decrementAndGet();
+                result.complete(value);
+            } else {
+                attemptFailed(t);
+            }
+        });
+    }
+
+    private void hedge() {
+        if (!result.isDone() && running.get() > 0 && hedged.compareAndSet(false, true))
+            send(true);
+    }
+
+    /**
+     * Ends an attempt that failed. While a hedged attempt is still running, its outcome decides the call; the
+     * decrement picks exactly one attempt to go on to {@link #onFailure(Throwable)}.
+     */
+    private void attemptFailed(Throwable t) {
+        if (running.decrementAndGet() == 0)
+            onFailure(t);
+    }
+
+    @SuppressWarnings("try")
+    private void onFailure(Throwable t) {
+        if (result.isDone())
+            return;
+        int made = attempts.get();
+        if (made < policy.getMaxAttempts() && policy.isRetryable(operation, t)) {
+            long delay = policy.backoff(made);
+            if (!hasDeadline || deadline - System.nanoTime() > TimeUnit.MILLISECONDS.toNanos(delay)) {
+                if (schedule(() -> send(false), delay)) {
+                    if (LOG.isDebugEnabled()) {
+                        try (LogContext context = LogContext.of(operation, guard.getHost(), null)) {
+                            LOG.debug("Attempt {} failed with {}; retrying in {} ms", made,
+                                    CallPolicy.unwrap(t).getClass().getSimpleName(), delay);
+                        }
+                    }
+                    return;
+                }
+            }
+        }
+        result.completeExceptionally(CallPolicy.unwrap(t));
+    }
+
+    private boolean schedule(Runnable task, long delay) {
+        try {
+            scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // The factory has been closed, so no more attempts are made.
+            return false;
+        }
+    }
+}
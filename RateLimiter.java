@@ -0,0 +1,263 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code RateLimiter} spaces out the calls to one CloudService host with token buckets: one for the host, and one
+ * for each endpoint that has its own rate. A call takes a token from each bucket that applies to it. When a bucket
+ * is empty the call is told how long to wait for its token, or is refused if that is longer than it may wait.
+ * <p>
+ * <br>
+ * When the host throttles a call (HTTP 429 or 503), the buckets that applied to it halve their rate, at most once a
+ * second, and hold every call back for as long as the server's {@code Retry-After} header asks. Each second of
+ * successful calls then raises the rate by a quarter, until it is back at the configured rate. A host with no
+ * configured rate is only held back after it throttles.
+ */
+final class RateLimiter {
+
+
+    // Fields
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimiter.class);
+
+    // How long calls are held back after a throttled call that did not say how long to wait.
+    private static final long DEFAULT_PAUSE = TimeUnit.SECONDS.toNanos(1);
+    private static final long ADJUST_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    // A throttled rate is never cut below this fraction of the configured rate.
+    private static final int MAX_SLOWDOWN = 16;
+
+    private final String host;
+    private final long maxWait;
+    private final Bucket hostBucket;
+    private final Bucket[] operationBuckets = new Bucket[CloudOperation.values().length];
+
+
+    // Constructor
+
+    /**
+     * @param host           the host, for log messages
+     * @param hostRate       the rate of every call to the host, or null for no limit
+     * @param operationRates the rate of each endpoint that has one
+     * @param maxWait        the longest any call may wait for its token, in milliseconds
+     */
+    RateLimiter(String host, Rate hostRate, Map<CloudOperation, Rate> operationRates, long maxWait) {
+        this.host = host;
+        this.maxWait = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWait));
+        long now = System.nanoTime();
+        this.hostBucket = new Bucket(hostRate, now);
+        operationRates.forEach((operation, rate) -> operationBuckets[operation.ordinal()] = new Bucket(rate, now));
+    }
+
+
+    // Methods
+
+    /**
+     * Takes a token for a call, and returns how long the call must wait before it is sent. If the call would have to
+     * wait longer than {@code maxWait}, or than the longest wait of the limiter, no token is taken and -1 is returned.
+     *
+     * @param operation the kind of call
+     * @param maxWait   the longest the call may wait, in nanoseconds
+     * @returns long, the wait in nanoseconds, or -1
+     */
+    long reserve(CloudOperation operation, long maxWait) {
+        maxWait = Math.min(maxWait, this.maxWait);
+        long now = System.nanoTime();
+        Bucket operationBucket = operationBuckets[operation.ordinal()];
+        long wait = 0;
+        if (operationBucket != null) {
+            wait = operationBucket.reserve(now, maxWait);
+            if (wait < 0)
+                return -1;
+        }
+        long hostWait = hostBucket.reserve(now, maxWait);
+        if (hostWait < 0) {
+            if (operationBucket != null)
+                operationBucket.refund();
+            return -1;
+        }
+        return Math.max(wait, hostWait);
+    }
+
+    /**
+     * Records the outcome of a call that was sent, slowing the buckets down if the host throttled it and speeding
+     * them back up after it has recovered.
+     *
+     * @param operation the kind of call
+     * @param failure   why the call failed, or null if it succeeded
+     */
+    @SuppressWarnings("try")
+    void onResult(CloudOperation operation, Throwable failure) {
+        long now = System.nanoTime();
+        Bucket operationBucket = operationBuckets[operation.ordinal()];
+        Throwable cause = CallPolicy.unwrap(failure);
+        if (cause instanceof CloudBankException && ((CloudBankException) cause).isThrottled()) {
+            long retryAfter = ((CloudBankException) cause).getRetryAfter();
+            long pause = retryAfter >= 0 ? TimeUnit.MILLISECONDS.toNanos(retryAfter) : -1;
+            boolean slowed = hostBucket.onThrottled(now, pause);
+            if (operationBucket != null)
+                slowed |= operationBucket.onThrottled(now, pause);
+            if (slowed && LOG.isWarnEnabled()) {
+                double rate = getRate();
+                try (LogContext context = LogContext.of(operation, host, null)) {
+                    LOG.warn("{} is throttling calls (HTTP {}); rate limit is now {} calls/s", host,
+                            ((CloudBankException) cause).getHttpStatus(), Double.isInfinite(rate) ? "unlimited" : rate);
+                }
+            }
+        } else if (failure == null) {
+            hostBucket.onSuccess(now);
+            if (operationBucket != null)
+                operationBucket.onSuccess(now);
+        }
+    }
+
+    /**
+     * Returns the current rate of the host, in calls per second, or {@link Double#POSITIVE_INFINITY} if it has none.
+     *
+     * @returns double
+     */
+    double getRate() {
+        return hostBucket.getRate();
+    }
+
+    /**
+     * Parses a {@code Retry-After} header, which is either a number of seconds or an HTTP date.
+     *
+     * @param value the header value, or null
+     * @returns long, the wait in milliseconds, or -1 if there is no valid header
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty())
+            return -1;
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(trimmed)));
+        } catch (NumberFormatException ignored) {
+            // Not a number of seconds, so it should be a date.
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Rate is a configured rate limit: the calls allowed each second, and how many may be sent at once after a
+     * quiet spell.
+     */
+    static final class Rate {
+
+        final double callsPerSecond;
+        final int burst;
+
+        Rate(double callsPerSecond, int burst) {
+            this.callsPerSecond = callsPerSecond;
+            this.burst = Math.max(1, burst);
+        }
+    }
+
+
+    /**
+     * Bucket is one token bucket, kept as the time its next token is due (the generic cell rate algorithm), so
+     * taking a token is a single compare-and-set.
+     */
+    private static final class Bucket {
+
+        // 0 when the bucket has no configured rate.
+        private final long configuredInterval;
+        private final int burst;
+        private final AtomicLong interval;
+        private final AtomicLong nextToken;
+        private final AtomicLong blockedUntil;
+        private final AtomicLong lastAdjusted;
+
+        Bucket(Rate rate, long now) {
+            this.configuredInterval = rate == null || rate.callsPerSecond <= 0 ? 0
+                    : Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate.callsPerSecond));
+            this.burst = rate == null ? 1 : rate.burst;
+            this.interval = new AtomicLong(configuredInterval);
+            this.nextToken = new AtomicLong(now);
+            this.blockedUntil = new AtomicLong(now);
+            this.lastAdjusted = new AtomicLong(now - ADJUST_INTERVAL);
+        }
+
+        long reserve(long now, long maxWait) {
+            long step = interval.get();
+            long tolerance = step * (burst - 1);
+            while (true) {
+                long due = nextToken.get();
+                long start = now;
+                if (due - tolerance - start > 0)
+                    start = due - tolerance;
+                long blocked = blockedUntil.get();
+                if (blocked - start > 0)
+                    start = blocked;
+                long wait = start - now;
+                if (wait > maxWait)
+                    return -1;
+                if (step == 0)
+                    return wait;
+                long next = (due - start > 0 ? due : start) + step;
+                if (nextToken.compareAndSet(due, next))
+                    return wait;
+            }
+        }
+
+        void refund() {
+            long step = interval.get();
+            if (step > 0)
+                nextToken.addAndGet(-step);
+        }
+
+        /**
+         * Holds calls back for {@code pause} nanoseconds, or a default pause if it is negative, and halves the rate
+         * if it has not changed within the last second. Returns true at most once a second, when the rate was cut or,
+         * for a bucket with no rate, when calls were first held back.
+         */
+        boolean onThrottled(long now, long pause) {
+            long until = now + (pause >= 0 ? pause : configuredInterval == 0 ? DEFAULT_PAUSE : 0);
+            blockedUntil.accumulateAndGet(until, (current, proposed) -> proposed - current > 0 ? proposed : current);
+            long last = lastAdjusted.get();
+            if (now - last < ADJUST_INTERVAL || !lastAdjusted.compareAndSet(last, now))
+                return false;
+            if (configuredInterval == 0)
+                return true;
+            long slowest = configuredInterval * MAX_SLOWDOWN;
+            long current = interval.get();
+            return current < slowest && interval.compareAndSet(current, Math.min(slowest, current * 2));
+        }
+
+        void onSuccess(long now) {
+            long current = interval.get();
+            if (current <= configuredInterval)
+                return;
+            long last = lastAdjusted.get();
+            if (now - last < ADJUST_INTERVAL || !lastAdjusted.compareAndSet(last, now))
+                return;
+            interval.compareAndSet(current, Math.max(configuredInterval, current * 4 / 5));
+        }
+
+        double getRate() {
+            long step = interval.get();
+            return step == 0 ? Double.POSITIVE_INFINITY : (double) TimeUnit.SECONDS.toNanos(1) / step;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * {@code ReceiptPublisher} publishes the CloudCoins of one receipt, for {@link CloudBankUtils#publishReceipt}. Each
+ * subscriber gets its own request, which is only sent once the subscriber asks for its first CloudCoin. A
+ * {@link ReceiptDetail} is decoded from the response each time the subscriber asks for one, so a slow subscriber
+ * holds the response bytes but never a whole array of details.
+ */
+final class ReceiptPublisher implements Flow.Publisher<ReceiptDetail> {
+
+
+    // Fields
+
+    private final Supplier<CompletableFuture<ReceiptReader.Cursor>> fetch;
+
+
+    // Constructor
+
+    ReceiptPublisher(Supplier<CompletableFuture<ReceiptReader.Cursor>> fetch) {
+        this.fetch = fetch;
+    }
+
+
+    // Methods
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ReceiptDetail> subscriber) {
+        subscriber.onSubscribe(new Subscription(subscriber));
+    }
+
+
+    private final class Subscription extends DrainSubscription<ReceiptDetail> {
+
+        private final AtomicBoolean fetched = new AtomicBoolean();
+        private volatile ReceiptReader.Cursor cursor;
+        private volatile Throwable failure;
+
+        Subscription(Flow.Subscriber<? super ReceiptDetail> subscriber) {
+            super(subscriber);
+        }
+
+        @Override
+        void onRequest() {
+            if (!fetched.compareAndSet(false, true))
+                return;
+            CompletableFuture<ReceiptReader.Cursor> call;
+            try {
+                call = fetch.get();
+            } catch (RuntimeException e) {
+                call = new CompletableFuture<>();
+                call.completeExceptionally(e);
+            }
+            call.whenComplete((result, t) -> {
+                if (t != null)
+                    failure = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                else
+                    cursor = result;
+                drain();
+            });
+        }
+
+        @Override
+        void emit() {
+            Throwable t = failure;
+            if (t != null) {
+                finish(t);
+                return;
+            }
+            ReceiptReader.Cursor current = cursor;
+            if (current == null)
+                return;
+            long emitted = 0;
+            long wanted = demand();
+            try {
+                while (emitted < wanted && !isFinished()) {
+                    ReceiptDetail detail = current.next();
+                    if (detail == null) {
+                        finish(null);
+                        return;
+                    }
+                    subscriber.onNext(detail);
+                    emitted++;
+                }
+                // Completing needs no demand, so a subscriber that asked for exactly the details left still hears
+                // that there are no more.
+                if (!isFinished() && !current.hasNext())
+                    finish(null);
+            } catch (RuntimeException e) {
+                finish(e);
+                return;
+            } finally {
+                produced(emitted);
+            }
+        }
+    }
+}
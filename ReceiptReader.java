@@ -0,0 +1,263 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * {@code ReceiptReader} reads a receipt with a {@link JsonReader} in a single pass. It counts the notes and
+ * denominations of each status as it goes, and passes each CloudCoin to an optional {@link ReceiptVisitor} instead
+ * of creating {@link ReceiptDetail} objects.
+ */
+final class ReceiptReader {
+
+
+    // Constructor
+
+    private ReceiptReader() {
+
+    }
+
+
+    // Methods
+
+    /**
+     * Reads a receipt from {@code reader}.
+     *
+     * @param reader  positioned at the start of the receipt object
+     * @param visitor receives each CloudCoin of the receipt, or null
+     * @returns {@link ReceiptSummary}
+     */
+    static ReceiptSummary read(JsonReader reader, ReceiptVisitor visitor) {
+        try {
+            ReceiptSummary summary = new ReceiptSummary();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "receipt_id":
+                        summary.receipt_id = reader.nextString();
+                        break;
+                    case "bank_server":
+                        summary.bank_server = reader.nextString();
+                        break;
+                    case "time":
+                        summary.time = reader.nextString();
+                        break;
+                    case "timezone":
+                        summary.timezone = reader.nextString();
+                        break;
+                    case "total_authentic":
+                        summary.total_authentic = reader.nextInt();
+                        break;
+                    case "total_fracked":
+                        summary.total_fracked = reader.nextInt();
+                        break;
+                    case "total_counterfeit":
+                        summary.total_counterfeit = reader.nextInt();
+                        break;
+                    case "total_lost":
+                        summary.total_lost = reader.nextInt();
+                        break;
+                    case "receipt_detail":
+                    case "receipt":
+                        readDetails(reader, summary, visitor);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return summary;
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Reads a receipt from {@code reader} up to the start of its CloudCoin detail, and returns a {@link Cursor}
+     * that reads one {@link ReceiptDetail} at a time from there. Fields after the detail are not read.
+     *
+     * @param reader positioned at the start of the receipt object
+     * @returns {@link Cursor}
+     */
+    static Cursor open(JsonReader reader) {
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                boolean detail = name.equals("receipt_detail") || name.equals("receipt");
+                if (detail && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    return new Cursor(reader);
+                }
+                reader.skipValue();
+            }
+            return new Cursor(null);
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static void readDetails(JsonReader reader, ReceiptSummary summary, ReceiptVisitor visitor)
+            throws IOException {
+        ReceiptVisitor counter = (nn, sn, status, pown, note) -> {
+            count(summary, status, sn);
+            if (visitor != null)
+                visitor.visit(nn, sn, status, pown, note);
+        };
+        reader.beginArray();
+        while (reader.hasNext())
+            readDetail(reader, visitor != null, counter);
+        reader.endArray();
+    }
+
+    /**
+     * Reads one CloudCoin of a receipt's detail and passes it to {@code visitor}. Missing and null fields are passed
+     * as 0 or null.
+     *
+     * @param reader   positioned at the start of the CloudCoin's object
+     * @param withText false to skip the pown and note strings, which are then passed as null
+     * @param visitor  receives the CloudCoin
+     */
+    private static void readDetail(JsonReader reader, boolean withText, ReceiptVisitor visitor) throws IOException {
+        int nn = 0;
+        int sn = 0;
+        String status = null;
+        String pown = null;
+        String note = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "nn":
+                    nn = reader.nextInt();
+                    break;
+                case "sn":
+                    sn = reader.nextInt();
+                    break;
+                case "status":
+                    status = reader.nextString();
+                    break;
+                case "pown":
+                    pown = withText ? reader.nextString() : skip(reader);
+                    break;
+                case "note":
+                    note = withText ? reader.nextString() : skip(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        visitor.visit(nn, sn, status, pown, note);
+    }
+
+    private static void count(ReceiptSummary summary, String status, int sn) {
+        if (status == null)
+            return;
+        // A coin without a valid serial number, such as a lost one, is counted but has no value.
+        switch (status) {
+            case "authentic":
+                summary.authenticNotes++;
+                summary.authenticCoins += Denominations.ofOrZero(sn);
+                break;
+            case "fracked":
+                summary.frackedNotes++;
+                summary.frackedCoins += Denominations.ofOrZero(sn);
+                break;
+            case "counterfeit":
+                summary.counterfeitNotes++;
+                summary.counterfeitCoins += Denominations.ofOrZero(sn);
+                break;
+            case "lost":
+                summary.lostNotes++;
+                summary.lostCoins += Denominations.ofOrZero(sn);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String skip(JsonReader reader) throws IOException {
+        reader.skipValue();
+        return null;
+    }
+
+
+    /**
+     * {@code Cursor} reads the CloudCoin detail of a receipt one {@link ReceiptDetail} at a time, so only the
+     * details that have been asked for are created.
+     */
+    static final class Cursor implements ReceiptVisitor {
+
+        private JsonReader reader;
+        // The CloudCoin read by the last call to readDetail.
+        private ReceiptDetail detail;
+
+        Cursor(JsonReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Returns the next CloudCoin of the receipt, or null once every CloudCoin has been read.
+         *
+         * @returns {@link ReceiptDetail}
+         */
+        ReceiptDetail next() {
+            if (!hasNext())
+                return null;
+            try {
+                readDetail(reader, true, this);
+                ReceiptDetail next = detail;
+                detail = null;
+                return next;
+            } catch (IOException e) {
+                reader = null;
+                throw new JsonSyntaxException(e);
+            }
+        }
+
+        /**
+         * Returns true if {@link #next()} has another CloudCoin to return.
+         *
+         * @returns boolean
+         */
+        boolean hasNext() {
+            if (reader == null)
+                return false;
+            try {
+                if (reader.hasNext())
+                    return true;
+                reader = null;
+                return false;
+            } catch (IOException e) {
+                reader = null;
+                throw new JsonSyntaxException(e);
+            }
+        }
+
+        @Override
+        public void visit(int nn, int sn, String status, String pown, String note) {
+            detail = new ReceiptDetail(nn, sn, status, pown, note);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code ReceiptSummary} contains the totals of a {@link Receipt}, counted while the receipt was read. Unlike
+ * {@link Receipt}, it does not hold the detail of each CloudCoin, so its size does not depend on the size of the
+ * deposit.
+ */
+public class ReceiptSummary {
+
+
+    // Fields
+
+    public String receipt_id;
+    public String bank_server;
+    public String time;
+    public String timezone;
+
+    // Totals as reported by the server
+    public int total_authentic;
+    public int total_fracked;
+    public int total_counterfeit;
+    public int total_lost;
+
+    // Notes counted from the receipt detail, by status
+    public int authenticNotes;
+    public int frackedNotes;
+    public int counterfeitNotes;
+    public int lostNotes;
+
+    // Sums of the denominations of the counted notes, by status
+    public int authenticCoins;
+    public int frackedCoins;
+    public int counterfeitCoins;
+    public int lostCoins;
+
+
+    // Constructor
+
+    public ReceiptSummary() {
+
+    }
+}
@@ -0,0 +1,334 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * {@code ReceiptTable} holds the detail of each CloudCoin in a receipt as columns of primitive arrays, instead of
+ * one {@link ReceiptDetail} and three Strings per CloudCoin. Statuses are stored as {@link CoinStatus} codes, and
+ * the 25 character pown results of every CloudCoin are packed into a single byte array.
+ * <p>
+ * <br>
+ * Rows are addressed by index, from 0 to {@link #size} - 1. Filtering by status and sorting by serial number
+ * do not allocate per row.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>cloudBankUtils.getReceiptTable(receiptNumber).thenAccept(table -> {</code>
+ * <br>
+ * <code>    table.forEachWithStatus(CoinStatus.COUNTERFEIT, row -> report(table.sn(row)));</code>
+ * <br>
+ * <code>}</code>
+ */
+public final class ReceiptTable {
+
+
+    // Fields
+
+    /**
+     * The number of RAIDA results in a pown String.
+     */
+    public static final int POWN_LENGTH = 25;
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private int size;
+    private int[] nn;
+    private int[] sn;
+    private byte[] status;
+    private byte[] pown;
+    // Most CloudCoins have no note, so this column is only created when one does.
+    private String[] notes;
+
+
+    // Constructor
+
+    private ReceiptTable(int capacity) {
+        capacity = Math.max(capacity, 16);
+        nn = new int[capacity];
+        sn = new int[capacity];
+        status = new byte[capacity];
+        pown = new byte[capacity * POWN_LENGTH];
+    }
+
+
+    // Methods
+
+    /**
+     * Creates a table from the detail of a {@link Receipt}.
+     *
+     * @param details the receipt detail, such as {@link Receipt#rd}
+     * @returns {@link ReceiptTable}
+     */
+    public static ReceiptTable from(ReceiptDetail[] details) {
+        Builder builder = new Builder(details.length);
+        for (ReceiptDetail detail : details)
+            builder.visit(detail.nn, detail.sn, detail.status, detail.pown, detail.note);
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of CloudCoins in the table.
+     *
+     * @returns int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the network number of the CloudCoin in {@code row}.
+     *
+     * @returns int
+     */
+    public int nn(int row) {
+        return nn[checkRow(row)];
+    }
+
+    /**
+     * Returns the serial number of the CloudCoin in {@code row}.
+     *
+     * @returns int
+     */
+    public int sn(int row) {
+        return sn[checkRow(row)];
+    }
+
+    /**
+     * Returns the status of the CloudCoin in {@code row}.
+     *
+     * @returns {@link CoinStatus}
+     */
+    public CoinStatus status(int row) {
+        return CoinStatus.fromCode(status[checkRow(row)]);
+    }
+
+    /**
+     * Returns the result of RAIDA server {@code raida} for the CloudCoin in {@code row}, such as 'p' for pass, or
+     * 0 if the server sent no result.
+     *
+     * @returns char
+     */
+    public char pown(int row, int raida) {
+        if (raida < 0 || raida >= POWN_LENGTH)
+            throw new IndexOutOfBoundsException("raida " + raida);
+        return (char) pown[checkRow(row) * POWN_LENGTH + raida];
+    }
+
+    /**
+     * Returns the pown String of the CloudCoin in {@code row}. This creates a new String on each call.
+     *
+     * @returns {@link String}
+     */
+    public String pown(int row) {
+        int offset = checkRow(row) * POWN_LENGTH;
+        int length = 0;
+        while (length < POWN_LENGTH && pown[offset + length] != 0)
+            length++;
+        return new String(pown, offset, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the note of the CloudCoin in {@code row}, or null if it has none.
+     *
+     * @returns {@link String}
+     */
+    public String note(int row) {
+        checkRow(row);
+        return notes == null ? null : notes[row];
+    }
+
+    /**
+     * Returns the number of CloudCoins with the status {@code coinStatus}.
+     *
+     * @returns int
+     */
+    public int countWithStatus(CoinStatus coinStatus) {
+        byte code = coinStatus.code();
+        int count = 0;
+        for (int row = 0; row < size; row++)
+            if (status[row] == code)
+                count++;
+        return count;
+    }
+
+    /**
+     * Returns the sum of the denominations of the CloudCoins with the status {@code coinStatus}. A CloudCoin without a
+     * valid serial number adds nothing.
+     *
+     * @returns int
+     */
+    public int sumWithStatus(CoinStatus coinStatus) {
+        byte code = coinStatus.code();
+        int sum = 0;
+        for (int row = 0; row < size; row++)
+            if (status[row] == code)
+                sum += Denominations.ofOrZero(sn[row]);
+        return sum;
+    }
+
+    /**
+     * Calls {@code action} with the index of each row whose status is {@code coinStatus}, in table order.
+     */
+    public void forEachWithStatus(CoinStatus coinStatus, IntConsumer action) {
+        byte code = coinStatus.code();
+        for (int row = 0; row < size; row++)
+            if (status[row] == code)
+                action.accept(row);
+    }
+
+    /**
+     * Returns the indexes of the rows whose status is {@code coinStatus}, in table order.
+     *
+     * @returns int[]
+     */
+    public int[] rowsWithStatus(CoinStatus coinStatus) {
+        int[] rows = new int[countWithStatus(coinStatus)];
+        byte code = coinStatus.code();
+        for (int row = 0, found = 0; found < rows.length; row++)
+            if (status[row] == code)
+                rows[found++] = row;
+        return rows;
+    }
+
+    /**
+     * Sorts the rows in place by serial number, then by network number. Row indexes from before the sort are no
+     * longer valid.
+     */
+    public void sortBySerialNumber() {
+        quickSort(0, size - 1);
+    }
+
+    private void quickSort(int low, int high) {
+        // Recurse into the smaller half and loop over the larger, so the stack stays O(log n) deep.
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, low) < 0)
+                swap(middle, low);
+            if (compare(high, low) < 0)
+                swap(high, low);
+            if (compare(high, middle) < 0)
+                swap(high, middle);
+            swap(middle, high - 1);
+            int pivot = high - 1;
+
+            int i = low;
+            int j = high - 1;
+            while (true) {
+                do {
+                    i++;
+                } while (compare(i, pivot) < 0);
+                do {
+                    j--;
+                } while (compare(j, pivot) > 0);
+                if (i >= j)
+                    break;
+                swap(i, j);
+            }
+            swap(i, high - 1);
+
+            if (i - low < high - i) {
+                quickSort(low, i - 1);
+                low = i + 1;
+            } else {
+                quickSort(i + 1, high);
+                high = i - 1;
+            }
+        }
+        for (int i = low + 1; i <= high; i++)
+            for (int j = i; j > low && compare(j, j - 1) < 0; j--)
+                swap(j, j - 1);
+    }
+
+    private int compare(int a, int b) {
+        int bySerial = Integer.compare(sn[a], sn[b]);
+        return bySerial != 0 ? bySerial : Integer.compare(nn[a], nn[b]);
+    }
+
+    private void swap(int a, int b) {
+        if (a == b)
+            return;
+        int tmp = nn[a];
+        nn[a] = nn[b];
+        nn[b] = tmp;
+        tmp = sn[a];
+        sn[a] = sn[b];
+        sn[b] = tmp;
+        byte code = status[a];
+        status[a] = status[b];
+        status[b] = code;
+        for (int offsetA = a * POWN_LENGTH, offsetB = b * POWN_LENGTH, end = offsetA + POWN_LENGTH;
+             offsetA < end; offsetA++, offsetB++) {
+            byte result = pown[offsetA];
+            pown[offsetA] = pown[offsetB];
+            pown[offsetB] = result;
+        }
+        if (notes != null) {
+            String note = notes[a];
+            notes[a] = notes[b];
+            notes[b] = note;
+        }
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        return row;
+    }
+
+    private void add(int coinNn, int coinSn, String coinStatus, String coinPown, String note) {
+        if (size == nn.length) {
+            int capacity = size * 2;
+            nn = Arrays.copyOf(nn, capacity);
+            sn = Arrays.copyOf(sn, capacity);
+            status = Arrays.copyOf(status, capacity);
+            pown = Arrays.copyOf(pown, capacity * POWN_LENGTH);
+            if (notes != null)
+                notes = Arrays.copyOf(notes, capacity);
+        }
+        nn[size] = coinNn;
+        sn[size] = coinSn;
+        status[size] = CoinStatus.fromStatus(coinStatus).code();
+        if (coinPown != null) {
+            int offset = size * POWN_LENGTH;
+            for (int i = 0, length = Math.min(coinPown.length(), POWN_LENGTH); i < length; i++)
+                pown[offset + i] = (byte) coinPown.charAt(i);
+        }
+        if (note != null && !note.isEmpty()) {
+            if (notes == null)
+                notes = new String[nn.length];
+            notes[size] = note;
+        }
+        size++;
+    }
+
+
+    /**
+     * Builder fills a {@link ReceiptTable} while a receipt is being read by a {@link ReceiptReader}.
+     */
+    static class Builder implements ReceiptVisitor {
+
+        private final ReceiptTable table;
+
+        Builder(int capacity) {
+            table = new ReceiptTable(capacity);
+        }
+
+        @Override
+        public void visit(int nn, int sn, String status, String pown, String note) {
+            table.add(nn, sn, status, pown, note);
+        }
+
+        ReceiptTable build() {
+            return table;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code ReceiptVisitor} receives each CloudCoin of a receipt while it is being read by
+ * {@link CloudBankUtils#getReceiptSummary(String, ReceiptVisitor)}. No {@link ReceiptDetail} objects are created.
+ * <p>
+ * <br>
+ * The visitor is called on the thread that reads the server's response, so it should return quickly.
+ */
+public interface ReceiptVisitor {
+
+    /**
+     * Called once for each CloudCoin in the receipt, in the order the server sent them.
+     *
+     * @param nn     the network number of the CloudCoin
+     * @param sn     the serial number of the CloudCoin
+     * @param status the status of the CloudCoin, such as "authentic" or "counterfeit"
+     * @param pown   the results from each RAIDA server
+     * @param note   the server's note for the CloudCoin, or null
+     */
+    void visit(int nn, int sn, String status, String pown, String note);
+}
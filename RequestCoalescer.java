@@ -0,0 +1,86 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * {@code RequestCoalescer} lets identical read-only server calls share one HTTP exchange. The first caller for a
+ * key sends the request; callers that ask for the same key before the response arrives join it instead of sending
+ * their own. Once the response arrives the key is forgotten, so nothing is cached beyond the exchange in flight.
+ * <p>
+ * <br>
+ * The shared result is the raw {@link Exchange}, not a decoded object. Each caller decodes it separately, so callers
+ * never share mutable results such as a {@link ReceiptTable}.
+ */
+final class RequestCoalescer {
+
+
+    // Fields
+
+    private final ConcurrentHashMap<String, CompletableFuture<Exchange>> inFlight = new ConcurrentHashMap<>();
+
+
+    // Methods
+
+    /**
+     * Returns the exchange in flight for {@code key}, or starts one with {@code send}.
+     *
+     * @param key  identifies the endpoint, host and parameters of the call, including the account's private key
+     * @param send sends the request; only called if no exchange for {@code key} is in flight
+     * @returns {@link CompletableFuture}
+     */
+    CompletableFuture<Exchange> join(String key, Supplier<CompletableFuture<Exchange>> send) {
+        CompletableFuture<Exchange> created = new CompletableFuture<>();
+        CompletableFuture<Exchange> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null)
+            return existing;
+
+        try {
+            send.get().whenComplete((exchange, t) -> {
+                // Forget the key first, so a caller that sees the result and asks again sends a new request.
+                inFlight.remove(key, created);
+                if (t != null)
+                    created.completeExceptionally(t);
+                else
+                    created.complete(exchange);
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    /**
+     * Returns the number of exchanges in flight.
+     *
+     * @returns int
+     */
+    int size() {
+        return inFlight.size();
+    }
+
+
+    /**
+     * Exchange is a complete, successful HTTP response that has not been decoded yet. Its body is only read once it
+     * is complete, so it can be decoded by any number of callers.
+     */
+    static final class Exchange {
+
+        final int status;
+        final ResponseBody body;
+
+        Exchange(int status, ResponseBody body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * {@code ResponseBody} collects the bytes of a CloudServer response. It is decoded straight from its byte array,
+ * without first building a {@link String} of the whole body.
+ */
+final class ResponseBody {
+
+
+    // Fields
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private byte[] bytes;
+    private int length;
+
+
+    // Constructor
+
+    /**
+     * @param expectedLength the Content-Length of the response, or -1 if it is not known
+     */
+    ResponseBody(long expectedLength) {
+        bytes = new byte[expectedLength > 0 && expectedLength <= Integer.MAX_VALUE
+                ? (int) expectedLength : DEFAULT_CAPACITY];
+    }
+
+
+    // Methods
+
+    /**
+     * Appends the remaining bytes of {@code part} to the body.
+     */
+    void append(ByteBuffer part) {
+        int partLength = part.remaining();
+        if (length + partLength > bytes.length)
+            bytes = Arrays.copyOf(bytes, Math.max(length + partLength, bytes.length * 2));
+        part.get(bytes, length, partLength);
+        length += partLength;
+    }
+
+    /**
+     * Returns the number of bytes received.
+     *
+     * @returns int
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Returns a {@link JsonReader} that reads the body from its bytes.
+     *
+     * @returns {@link JsonReader}
+     */
+    JsonReader reader() {
+        return new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes, 0, length),
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the body into an object of type {@code type}.
+     *
+     * @returns the decoded object
+     */
+    <T> T fromJson(Gson gson, Class<T> type) {
+        return gson.fromJson(reader(), type);
+    }
+
+    /**
+     * Returns the body as a String. Only used when the caller asked for the raw body, such as a withdrawn stack.
+     *
+     * @returns {@link String}
+     */
+    String asString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns true if the body begins like a CloudCoin stack rather than a server message.
+     *
+     * @returns boolean
+     */
+    boolean isStack() {
+        return StackFileHandler.isStack(bytes, Math.min(length, StackFileHandler.PREFIX_SIZE));
+    }
+
+    /**
+     * Creates the exception for a refused server call, reading the server's explanation from the body if it sent
+     * one.
+     *
+     * @param status the HTTP status of the response
+     * @returns {@link CloudBankException}
+     */
+    CloudBankException failure(Gson gson, int status) {
+        return failure(gson, status, -1);
+    }
+
+    /**
+     * Creates the exception for a refused server call, reading the server's explanation from the body if it sent
+     * one.
+     *
+     * @param status     the HTTP status of the response
+     * @param retryAfter the wait the server asked for in its {@code Retry-After} header, in milliseconds, or -1
+     * @returns {@link CloudBankException}
+     */
+    CloudBankException failure(Gson gson, int status, long retryAfter) {
+        FailResponse failResponse;
+        try {
+            failResponse = fromJson(gson, FailResponse.class);
+        } catch (JsonParseException e) {
+            failResponse = null;
+        }
+        return new CloudBankException(status, failResponse, retryAfter);
+    }
+}
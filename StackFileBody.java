@@ -0,0 +1,159 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import io.netty.buffer.ByteBuf;
+import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.BodyGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@code StackFileBody} streams a CloudCoin stack file as the {@code application/x-www-form-urlencoded} body of a
+ * deposit. The file is read through a {@link FileChannel} one chunk at a time and URL-encoded directly into the
+ * outgoing buffer, so a deposit uses the same amount of memory no matter how large the stack is.
+ * <p>
+ * <br>
+ * The body is sent with chunked transfer encoding, and is equivalent to the form parameters
+ * {@code pk=<private key>&stack=<file contents>}.
+ */
+class StackFileBody implements BodyGenerator {
+
+
+    // Fields
+
+    static final String CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    private static final int READ_CHUNK_SIZE = 8192;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path stackFile;
+    private final byte[] prefix;
+
+
+    // Constructor
+
+    /**
+     * @param stackFile  the CloudCoin stack file to upload
+     * @param privateKey the private key of the account receiving the deposit
+     */
+    StackFileBody(Path stackFile, String privateKey) {
+        this.stackFile = stackFile;
+        this.prefix = formPrefix(privateKey);
+    }
+
+
+    // Methods
+
+    @Override
+    public Body createBody() {
+        return new StackBody();
+    }
+
+    /**
+     * Returns the form-encoded start of a deposit body, {@code pk=<private key>&stack=}, which is followed by the
+     * form-encoded stack.
+     *
+     * @returns byte[]
+     */
+    static byte[] formPrefix(String privateKey) {
+        ByteBuffer encodedKey = ByteBuffer.allocate(privateKey.length() * 9 + 10);
+        encodedKey.put("pk=".getBytes(StandardCharsets.US_ASCII));
+        for (byte b : privateKey.getBytes(StandardCharsets.UTF_8))
+            encodedKey.position(encode(b, encodedKey.array(), encodedKey.position()));
+        encodedKey.put("&stack=".getBytes(StandardCharsets.US_ASCII));
+        byte[] prefix = new byte[encodedKey.position()];
+        System.arraycopy(encodedKey.array(), 0, prefix, 0, prefix.length);
+        return prefix;
+    }
+
+    /**
+     * Form-encodes a single byte the same way AsyncHttpClient encodes form parameters.
+     *
+     * @returns the offset in {@code out} after the encoded byte
+     */
+    static int encode(byte b, byte[] out, int offset) {
+        if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+                || b == '-' || b == '.' || b == '_' || b == '*') {
+            out[offset++] = b;
+        } else if (b == ' ') {
+            out[offset++] = '+';
+        } else {
+            out[offset++] = '%';
+            out[offset++] = HEX[(b >> 4) & 0x0F];
+            out[offset++] = HEX[b & 0x0F];
+        }
+        return offset;
+    }
+
+
+    /**
+     * StackBody is a single upload of the stack file. AsyncHttpClient creates a new one for every attempt.
+     */
+    private class StackBody implements Body {
+
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_CHUNK_SIZE);
+        private final byte[] encoded = new byte[READ_CHUNK_SIZE * 3];
+        private FileChannel channel;
+        private int prefixOffset;
+        private boolean endOfFile;
+
+        StackBody() {
+            readBuffer.limit(0);
+        }
+
+        @Override
+        public long getContentLength() {
+            // Unknown until the whole file has been encoded, so the body is sent chunked.
+            return -1;
+        }
+
+        @Override
+        public BodyState transferTo(ByteBuf target) throws IOException {
+            if (prefixOffset < prefix.length) {
+                int length = Math.min(prefix.length - prefixOffset, target.writableBytes());
+                target.writeBytes(prefix, prefixOffset, length);
+                prefixOffset += length;
+                if (prefixOffset < prefix.length)
+                    return BodyState.CONTINUE;
+            }
+            if (channel == null)
+                channel = FileChannel.open(stackFile, StandardOpenOption.READ);
+
+            // Every input byte can take up to three output bytes, so only encode what is certain to fit.
+            while (target.writableBytes() >= 3) {
+                if (!readBuffer.hasRemaining()) {
+                    readBuffer.clear();
+                    int read = channel.read(readBuffer);
+                    readBuffer.flip();
+                    if (read < 0) {
+                        endOfFile = true;
+                        break;
+                    }
+                }
+                int length = 0;
+                int limit = Math.min(encoded.length, target.writableBytes()) - 2;
+                while (readBuffer.hasRemaining() && length < limit)
+                    length = encode(readBuffer.get(), encoded, length);
+                target.writeBytes(encoded, 0, length);
+            }
+            return endOfFile ? BodyState.STOP : BodyState.CONTINUE;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null)
+                channel.close();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * {@code StackFileHandler} writes a withdrawn CloudCoin stack straight to disk as it arrives. Body parts are written
+ * to a temporary file in the target directory, which is renamed to its final name once the whole stack has been
+ * received. A stack file that is already there is never replaced: if the name is taken, a number is added to it.
+ * Only a small prefix of the body is kept in memory, and is used to tell a stack from a
+ * {@link FailResponse}.
+ */
+class StackFileHandler implements AsyncHandler<Path> {
+
+
+    // Fields
+
+    static final int PREFIX_SIZE = 1024;
+
+    private static final Pattern STACK_START = Pattern.compile("^\\s*\\{\\s*\"cloudcoin\"");
+
+    private final Path directory;
+    private final String stackName;
+    private final Gson gson;
+
+    private final byte[] prefix = new byte[PREFIX_SIZE];
+    private int prefixLength;
+    private long bodyLength;
+    private int status;
+    private Path tempFile;
+    private FileChannel channel;
+
+
+    // Constructor
+
+    /**
+     * @param directory the directory the stack file is saved to
+     * @param stackName the name of the stack file, usually from {@link CloudBankUtils#getStackName}
+     * @param gson      used to read a {@link FailResponse} from the body prefix
+     */
+    StackFileHandler(Path directory, String stackName, Gson gson) {
+        this.directory = directory;
+        this.stackName = stackName;
+        this.gson = gson;
+    }
+
+
+    // Methods
+
+    @Override
+    public State onStatusReceived(HttpResponseStatus responseStatus) {
+        status = responseStatus.getStatusCode();
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpResponseHeaders headers) {
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws IOException {
+        ByteBuffer bytes = bodyPart.getBodyByteBuffer();
+        if (prefixLength < PREFIX_SIZE) {
+            int length = Math.min(PREFIX_SIZE - prefixLength, bytes.remaining());
+            bytes.duplicate().get(prefix, prefixLength, length);
+            prefixLength += length;
+        }
+        if (channel == null) {
+            tempFile = Files.createTempFile(directory, "withdrawal", ".tmp");
+            channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+        }
+        bodyLength += bytes.remaining();
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+        return State.CONTINUE;
+    }
+
+    @Override
+    public Path onCompleted() throws IOException {
+        closeChannel();
+        if (status / 100 != 2 || !isStack(prefix, prefixLength)) {
+            deleteTempFile();
+            throw new CloudBankException(status, readFailResponse(gson, prefix, prefixLength, bodyLength));
+        }
+
+        try {
+            return claimName();
+        } catch (IOException e) {
+            deleteTempFile();
+            throw e;
+        }
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+        try {
+            closeChannel();
+        } catch (IOException ignored) {
+            // The call already failed, and the temporary file is removed below.
+        }
+        deleteTempFile();
+    }
+
+    /**
+     * Returns true if a response body begins like a CloudCoin stack rather than a server message.
+     *
+     * @param prefix the first bytes of the response body
+     * @param length the number of bytes in {@code prefix}
+     * @returns boolean
+     */
+    static boolean isStack(byte[] prefix, int length) {
+        return isStack(new String(prefix, 0, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns true if a response body begins like a CloudCoin stack rather than a server message.
+     *
+     * @param body the response body, or its first characters
+     * @returns boolean
+     */
+    static boolean isStack(CharSequence body) {
+        return STACK_START.matcher(body).lookingAt();
+    }
+
+    /**
+     * Reads the {@link FailResponse} of a refused withdrawal from the prefix of its body.
+     *
+     * @returns {@link FailResponse}, or null if the body is not a complete server message
+     */
+    static FailResponse readFailResponse(Gson gson, byte[] prefix, int prefixLength, long bodyLength) {
+        if (bodyLength > prefix.length)
+            return null;
+        try {
+            return gson.fromJson(new String(prefix, 0, prefixLength, StandardCharsets.UTF_8), FailResponse.class);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gives the temporary file the stack's name, or the name with a number added if a file of that name already
+     * exists, such as a stack of the same amount withdrawn in the same millisecond.
+     *
+     * @returns {@link Path} of the stack file
+     */
+    private Path claimName() throws IOException {
+        int extension = stackName.endsWith(".stack") ? stackName.length() - ".stack".length() : stackName.length();
+        for (int copy = 1; ; copy++) {
+            Path stackFile = directory.resolve(copy == 1 ? stackName
+                    : stackName.substring(0, extension) + "-" + copy + stackName.substring(extension));
+            try {
+                moveWithoutReplacing(tempFile, stackFile);
+                // After a hard link the temporary name is still there.
+                deleteTempFile();
+                return stackFile;
+            } catch (FileAlreadyExistsException e) {
+                // Try the next name.
+            }
+        }
+    }
+
+    /**
+     * Links or moves {@code source} to {@code target}, failing with {@link FileAlreadyExistsException} if
+     * {@code target} exists. A hard link is used where the file system has them, because creating one fails
+     * atomically if the name is taken, whereas an atomic rename would silently replace the file.
+     */
+    private static void moveWithoutReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | IOException e) {
+            // No hard links here; a plain move checks for the target first, and never replaces it.
+            Files.move(source, target);
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void deleteTempFile() {
+        if (tempFile == null)
+            return;
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException ignored) {
+            // A leftover .tmp file does not affect later withdrawals.
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import io.netty.buffer.ByteBuf;
+import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.FeedListener;
+import org.asynchttpclient.request.body.generator.FeedableBodyGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@code StackSpool} is the body of a deposit whose stack is still being downloaded. Each part of the stack is
+ * appended to a spool file with {@link #feed}, and the deposit reads the file behind the writer, form-encoding it
+ * the same way as {@link StackFileBody}. When the reader catches up it suspends until more of the stack arrives.
+ * <p>
+ * <br>
+ * The spool file holds the whole stack once the download completes, so the CloudCoins can be recovered from it if
+ * the deposit fails. Memory use does not grow with the size of the stack.
+ */
+class StackSpool implements FeedableBodyGenerator {
+
+
+    // Fields
+
+    private static final int READ_CHUNK_SIZE = 8192;
+
+    private final Path file;
+    private final byte[] prefix;
+    private final FileChannel out;
+
+    // Written by the download, read by the upload. The length is always published before the finished flag.
+    private volatile long length;
+    private volatile boolean finished;
+    private volatile IOException failure;
+    private volatile FeedListener listener;
+
+
+    // Constructor
+
+    /**
+     * @param file       the spool file, which must exist and is written from the start
+     * @param privateKey the private key of the account receiving the deposit
+     * @throws IOException if the spool file cannot be opened
+     */
+    StackSpool(Path file, String privateKey) throws IOException {
+        this.file = file;
+        this.prefix = StackFileBody.formPrefix(privateKey);
+        this.out = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+
+    // Methods
+
+    /**
+     * Appends part of the stack to the spool file and wakes the upload.
+     *
+     * @param buffer the next part of the stack
+     * @param isLast true if this is the end of the stack
+     * @returns true, as the spool file never refuses a part
+     */
+    @Override
+    public boolean feed(ByteBuffer buffer, boolean isLast) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining())
+            written += out.write(buffer);
+        length += written;
+        if (isLast) {
+            out.close();
+            finished = true;
+        }
+        contentAdded();
+        return true;
+    }
+
+    /**
+     * Ends the upload with {@code cause}, because the stack could not be downloaded.
+     */
+    void fail(Throwable cause) {
+        failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // The upload is failing anyway.
+        }
+        contentAdded();
+    }
+
+    /**
+     * Returns the spool file.
+     *
+     * @returns {@link Path}
+     */
+    Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void setListener(FeedListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Body createBody() {
+        return new SpoolBody();
+    }
+
+    private void contentAdded() {
+        FeedListener current = listener;
+        if (current != null)
+            current.onContentAdded();
+    }
+
+
+    /**
+     * SpoolBody is a single upload of the spool file. AsyncHttpClient creates a new one for every attempt.
+     */
+    private class SpoolBody implements Body {
+
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_CHUNK_SIZE);
+        private final byte[] encoded = new byte[READ_CHUNK_SIZE * 3];
+        private FileChannel channel;
+        private int prefixOffset;
+        private long position;
+
+        SpoolBody() {
+            readBuffer.limit(0);
+        }
+
+        @Override
+        public long getContentLength() {
+            // Unknown until the whole stack has been downloaded, so the body is sent chunked.
+            return -1;
+        }
+
+        @Override
+        public BodyState transferTo(ByteBuf target) throws IOException {
+            int start = target.writerIndex();
+            if (prefixOffset < prefix.length) {
+                int count = Math.min(prefix.length - prefixOffset, target.writableBytes());
+                target.writeBytes(prefix, prefixOffset, count);
+                prefixOffset += count;
+                if (prefixOffset < prefix.length)
+                    return BodyState.CONTINUE;
+            }
+            if (channel == null)
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+
+            // Read the finished flag before the length, so a finished spool is never cut short.
+            boolean done = finished;
+            long available = length;
+            while (target.writableBytes() >= 3) {
+                if (!readBuffer.hasRemaining()) {
+                    if (position >= available)
+                        break;
+                    readBuffer.clear();
+                    readBuffer.limit((int) Math.min(READ_CHUNK_SIZE, available - position));
+                    int read = channel.read(readBuffer, position);
+                    readBuffer.flip();
+                    if (read <= 0)
+                        break;
+                    position += read;
+                }
+                int count = 0;
+                int limit = Math.min(encoded.length, target.writableBytes()) - 2;
+                while (readBuffer.hasRemaining() && count < limit)
+                    count = StackFileBody.encode(readBuffer.get(), encoded, count);
+                target.writeBytes(encoded, 0, count);
+            }
+
+            if (failure != null)
+                throw failure;
+            if (done && position >= available && !readBuffer.hasRemaining())
+                return BodyState.STOP;
+            // A suspended chunk is discarded, so only suspend when nothing was written.
+            return target.writerIndex() > start ? BodyState.CONTINUE : BodyState.SUSPEND;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null)
+                channel.close();
+        }
+    }
+}
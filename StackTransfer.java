@@ -0,0 +1,172 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import com.google.gson.Gson;
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * {@code StackTransfer} is the {@link AsyncHandler} of the withdrawal half of a {@link CloudBankUtils#transfer}.
+ * Each part of the withdrawn stack is written to a {@link StackSpool}. As soon as the start of the body shows it is
+ * a stack rather than a refusal, the deposit to the receiving server is started, and it uploads the stack while the
+ * rest is still downloading.
+ * <p>
+ * <br>
+ * If the download fails part way, the upload fails with it, so a cut-off stack is never deposited. If the deposit
+ * fails after the CloudCoins were withdrawn, the spool file is kept so they can be recovered. A deposit can fail
+ * before the download ends, for example when the receiving host's circuit breaker is open, so the transfer's result
+ * waits for the download and reports whether the spool file holds the whole stack.
+ */
+class StackTransfer implements AsyncHandler<Void> {
+
+
+    // Fields
+
+    private final String toPublicURL;
+    private final int amount;
+    private final StackSpool spool;
+    private final Function<StackSpool, CompletableFuture<DepositResponse>> deposit;
+    private final Gson gson;
+    private final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+    // Completes with true once the whole stack is in the spool file, or false if the withdrawal failed.
+    private final CompletableFuture<Boolean> downloaded = new CompletableFuture<>();
+
+    private final byte[] prefix = new byte[StackFileHandler.PREFIX_SIZE];
+    private int prefixLength;
+    private long bodyLength;
+    private int status;
+    private boolean depositStarted;
+
+
+    // Constructor
+
+    /**
+     * @param toPublicURL the url of the CloudService server the CloudCoins are sent to
+     * @param amount      the amount of CloudCoins being transferred
+     * @param spool       holds the withdrawn stack while it is deposited
+     * @param deposit     starts the deposit of the spooled stack
+     * @param gson        used to read a {@link FailResponse} from the body prefix
+     */
+    StackTransfer(String toPublicURL, int amount, StackSpool spool,
+                  Function<StackSpool, CompletableFuture<DepositResponse>> deposit, Gson gson) {
+        this.toPublicURL = toPublicURL;
+        this.amount = amount;
+        this.spool = spool;
+        this.deposit = deposit;
+        this.gson = gson;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns a future that completes once both the withdrawal and the deposit have finished, or once the withdrawal
+     * has failed before the deposit started. It never completes exceptionally; failures are reported in
+     * {@link TransferResult#error}.
+     *
+     * @returns {@link CompletableFuture}
+     */
+    CompletableFuture<TransferResult> result() {
+        return result;
+    }
+
+    @Override
+    public State onStatusReceived(HttpResponseStatus responseStatus) {
+        status = responseStatus.getStatusCode();
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpResponseHeaders headers) {
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws IOException {
+        ByteBuffer bytes = bodyPart.getBodyByteBuffer();
+        if (prefixLength < prefix.length) {
+            int length = Math.min(prefix.length - prefixLength, bytes.remaining());
+            bytes.duplicate().get(prefix, prefixLength, length);
+            prefixLength += length;
+        }
+        bodyLength += bytes.remaining();
+        if (status / 100 != 2)
+            return State.CONTINUE;
+
+        spool.feed(bytes, false);
+        if (!depositStarted && StackFileHandler.isStack(prefix, prefixLength))
+            startDeposit();
+        return State.CONTINUE;
+    }
+
+    @Override
+    public Void onCompleted() throws IOException {
+        if (status / 100 != 2 || !StackFileHandler.isStack(prefix, prefixLength)) {
+            CloudBankException refused = new CloudBankException(status,
+                    StackFileHandler.readFailResponse(gson, prefix, prefixLength, bodyLength));
+            spool.fail(refused);
+            downloaded.complete(false);
+            finish(null, refused, false, false);
+            throw refused;
+        }
+        spool.feed(ByteBuffer.allocate(0), true);
+        downloaded.complete(true);
+        if (!depositStarted)
+            startDeposit();
+        return null;
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+        spool.fail(t);
+        downloaded.complete(false);
+        // Once the deposit has started, it fails with the spool and reports the error itself.
+        if (!depositStarted)
+            finish(null, t, false, false);
+    }
+
+    private void startDeposit() {
+        depositStarted = true;
+        CompletableFuture<DepositResponse> call;
+        try {
+            call = deposit.apply(spool);
+        } catch (RuntimeException e) {
+            call = new CompletableFuture<>();
+            call.completeExceptionally(e);
+        }
+        // The deposit may end first, so the result waits until nothing more is written to the spool file.
+        call.whenComplete((response, t) -> downloaded.thenAccept(whole -> finish(response, t, true, whole)));
+    }
+
+    private void finish(DepositResponse response, Throwable t, boolean withdrawn, boolean whole) {
+        Path recoveryFile = null;
+        if (withdrawn && response == null) {
+            recoveryFile = spool.getFile();
+        } else {
+            try {
+                Files.deleteIfExists(spool.getFile());
+            } catch (IOException ignored) {
+                // A leftover spool file does not affect later transfers.
+            }
+        }
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        result.complete(new TransferResult(toPublicURL, amount, response, recoveryFile, recoveryFile != null && whole,
+                cause));
+    }
+}
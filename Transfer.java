@@ -0,0 +1,39 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code Transfer} describes one transfer of CloudCoins for {@link CloudBankUtils#transferAll}.
+ */
+public class Transfer {
+
+
+    // Fields
+
+    /**
+     * The url of the CloudService server the CloudCoins are sent to. Do not include "https://".
+     */
+    public String toPublicURL;
+
+    /**
+     * The amount of CloudCoins to transfer.
+     */
+    public int amount;
+
+
+    // Constructors
+
+    public Transfer() {
+
+    }
+
+    public Transfer(String toPublicURL, int amount) {
+        this.toPublicURL = toPublicURL;
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,53 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * {@code TransferOptions} configures {@link CloudBankUtils#transfer} and {@link CloudBankUtils#transferAll}. Every
+ * field has a default, so only the settings that differ need to be changed.
+ *
+ * <h3>Usage</h3>
+ * <p>
+ * <code>TransferOptions options = new TransferOptions();
+ * <br>
+ * options.maxConcurrency = 16;
+ * <br>
+ * options.spoolDirectory = Paths.get("transfers");</code>
+ */
+public class TransferOptions {
+
+
+    // Fields
+
+    /**
+     * The largest number of transfers in flight at once in {@link CloudBankUtils#transferAll}.
+     */
+    public int maxConcurrency = 8;
+
+    /**
+     * The directory each withdrawn stack is spooled to while it is deposited. If a deposit fails after its
+     * CloudCoins were withdrawn, the spooled stack is kept here and named in {@link TransferResult#recoveryFile}.
+     * If null, the system's temporary directory is used.
+     */
+    public Path spoolDirectory;
+
+    /**
+     * Called with the outcome of each transfer as soon as it is known. May be null.
+     */
+    public Consumer<TransferResult> listener;
+
+
+    // Constructor
+
+    public TransferOptions() {
+
+    }
+}
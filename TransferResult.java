@@ -0,0 +1,82 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.nio.file.Path;
+
+/**
+ * {@code TransferResult} contains the outcome of one transfer made with {@link CloudBankUtils#transfer} or
+ * {@link CloudBankUtils#transferAll}.
+ */
+public class TransferResult {
+
+
+    // Fields
+
+    /**
+     * The url of the CloudService server the CloudCoins were sent to.
+     */
+    public final String toPublicURL;
+
+    /**
+     * The amount of CloudCoins that was requested.
+     */
+    public final int amount;
+
+    /**
+     * The receiving server's response to the deposit, or null if the transfer failed.
+     */
+    public final DepositResponse response;
+
+    /**
+     * The stack file holding CloudCoins that were withdrawn but not deposited, or null. It can be deposited again
+     * with {@link CloudBankUtils#depositStack(Path, String)}.
+     */
+    public final Path recoveryFile;
+
+    /**
+     * True if {@link #recoveryFile} holds the whole withdrawn stack. False if the withdrawal was cut off, so the file
+     * only holds the start of the stack and the rest of the CloudCoins must be recovered from the server's receipt.
+     */
+    public final boolean recoveryFileComplete;
+
+    /**
+     * Why the transfer failed, or null if it succeeded.
+     */
+    public final Throwable error;
+
+
+    // Constructor
+
+    public TransferResult(String toPublicURL, int amount, DepositResponse response, Path recoveryFile,
+                          Throwable error) {
+        this(toPublicURL, amount, response, recoveryFile, recoveryFile != null, error);
+    }
+
+    public TransferResult(String toPublicURL, int amount, DepositResponse response, Path recoveryFile,
+                          boolean recoveryFileComplete, Throwable error) {
+        this.toPublicURL = toPublicURL;
+        this.amount = amount;
+        this.response = response;
+        this.recoveryFile = recoveryFile;
+        this.recoveryFileComplete = recoveryFileComplete;
+        this.error = error;
+    }
+
+
+    // Methods
+
+    /**
+     * Returns true if the receiving server accepted the CloudCoins.
+     *
+     * @returns boolean
+     */
+    public boolean isSuccess() {
+        return response != null;
+    }
+}
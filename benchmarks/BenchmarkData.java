@@ -0,0 +1,145 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * {@code BenchmarkData} builds the server responses and CloudCoin stacks used by the benchmarks. The data is shaped
+ * like real CloudService responses and is generated from a fixed seed, so every run measures the same bytes.
+ */
+final class BenchmarkData {
+
+
+    // Fields
+
+    static final String RECEIPT_NUMBER = "e054a34f2790fd3353ea26e5d92d9d2f";
+
+    private static final String[] STATUSES = {"authentic", "authentic", "authentic", "fracked", "counterfeit"};
+
+
+    // Constructor
+
+    private BenchmarkData() {
+
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the show coins response of an account holding a few thousand CloudCoins.
+     *
+     * @returns {@link String}
+     */
+    static String bankTotal() {
+        return "{\"bank_server\":\"bank.cloudcoin.global\",\"time\":\"2018-06-15 10:15:30\",\"ones\":1203,"
+                + "\"fives\":302,\"twentyfives\":61,\"hundreds\":25,\"twohundredfifties\":4,"
+                + "\"status\":\"coins_shown\"}";
+    }
+
+    /**
+     * Returns the response to an accepted deposit.
+     *
+     * @returns {@link String}
+     */
+    static String depositResponse() {
+        return "{\"bank_server\":\"bank.cloudcoin.global\",\"time\":\"2018-06-15 10:15:30\","
+                + "\"status\":\"importing\",\"message\":\"The stack file has been imported and detection will "
+                + "begin automatically so long as they are not too many coins in the stack file.\","
+                + "\"receipt\":\"" + RECEIPT_NUMBER + "\"}";
+    }
+
+    /**
+     * Returns a receipt with {@code details} receipt details.
+     *
+     * @returns {@link String}
+     */
+    static String receipt(int details) {
+        Random random = new Random(details);
+        StringBuilder json = new StringBuilder(details * 110 + 300);
+        json.append("{\"bank_server\":\"bank.cloudcoin.global\",\"time\":\"2018-06-15 10:15:30\",")
+                .append("\"receipt_id\":\"").append(RECEIPT_NUMBER).append("\",\"timezone\":\"UTC-7\",")
+                .append("\"total_authentic\":").append(details * 3 / 5)
+                .append(",\"total_fracked\":").append(details / 5)
+                .append(",\"total_counterfeit\":").append(details - details * 4 / 5)
+                .append(",\"total_lost\":0,\"receipt_detail\":[");
+        for (int i = 0; i < details; i++) {
+            if (i > 0)
+                json.append(',');
+            json.append("{\"nn\":1,\"sn\":").append(1 + random.nextInt(Denominations.MAX_SERIAL_NUMBER))
+                    .append(",\"status\":\"").append(STATUSES[i % STATUSES.length])
+                    .append("\",\"pown\":\"ppppppppppppppppppppppppp\",\"note\":\"Moved to Bank\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Returns a stack of about {@code bytes} bytes.
+     *
+     * @returns byte[]
+     */
+    static byte[] stack(int bytes) {
+        StringBuilder stack = new StringBuilder(bytes + 1024);
+        try {
+            writeStack(stack, bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return stack.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a stack of about {@code bytes} bytes to {@code file}, without holding it in memory.
+     */
+    static void writeStack(Path file, long bytes) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeStack(writer, bytes);
+        }
+    }
+
+    /**
+     * Returns {@code count} random valid serial numbers.
+     *
+     * @returns int[]
+     */
+    static int[] serialNumbers(int count) {
+        return new Random(count).ints(count, Denominations.MIN_SERIAL_NUMBER, Denominations.MAX_SERIAL_NUMBER + 1)
+                .toArray();
+    }
+
+    private static void writeStack(Appendable out, long bytes) throws IOException {
+        Random random = new Random(bytes);
+        long written = 0;
+        out.append("{\"cloudcoin\":[");
+        for (int coin = 0; written < bytes || coin == 0; coin++) {
+            StringBuilder json = new StringBuilder(1024);
+            if (coin > 0)
+                json.append(',');
+            json.append("{\"nn\":\"1\",\"sn\":\"").append(1 + random.nextInt(Denominations.MAX_SERIAL_NUMBER))
+                    .append("\",\"an\":[");
+            for (int an = 0; an < 25; an++) {
+                if (an > 0)
+                    json.append(',');
+                json.append('"');
+                for (int digit = 0; digit < 32; digit++)
+                    json.append(Character.forDigit(random.nextInt(16), 16));
+                json.append('"');
+            }
+            json.append("],\"ed\":\"9-2020\",\"pown\":\"ppppppppppppppppppppppppp\",\"aoid\":[]}");
+            out.append(json);
+            written += json.length();
+        }
+        out.append("]}");
+    }
+}
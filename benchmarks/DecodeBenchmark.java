@@ -0,0 +1,87 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code DecodeBenchmark} measures how long the SDK takes to turn server responses into Java objects: Gson decoding
+ * of {@link BankTotal}, {@link DepositResponse} and {@link Receipt}, and the streaming {@link ReceiptReader} used by
+ * {@link CloudBankUtils#getReceiptSummary}. Receipts are measured with 1k, 10k and 100k receipt details.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+
+    // Fields
+
+    private final Gson gson = new Gson();
+    private final String bankTotal = BenchmarkData.bankTotal();
+    private final String depositResponse = BenchmarkData.depositResponse();
+
+
+    // Methods
+
+    @Benchmark
+    public BankTotal bankTotal() {
+        return gson.fromJson(bankTotal, BankTotal.class);
+    }
+
+    @Benchmark
+    public DepositResponse depositResponse() {
+        return gson.fromJson(depositResponse, DepositResponse.class);
+    }
+
+    @Benchmark
+    public Receipt receipt(Receipts receipts) {
+        return gson.fromJson(receipts.json, Receipt.class);
+    }
+
+    @Benchmark
+    public ReceiptSummary receiptSummary(Receipts receipts) {
+        return ReceiptReader.read(new JsonReader(new StringReader(receipts.json)), null);
+    }
+
+
+    /**
+     * Receipts holds the receipt being decoded, so that only the receipt benchmarks run for each size.
+     */
+    @State(Scope.Benchmark)
+    public static class Receipts {
+
+        @Param({"1000", "10000", "100000"})
+        public int details;
+
+        String json;
+
+        @Setup
+        public void setUp() {
+            json = BenchmarkData.receipt(details);
+        }
+    }
+}
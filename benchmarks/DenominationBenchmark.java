@@ -0,0 +1,70 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code DenominationBenchmark} measures denomination lookups in bulk: one {@link Denominations#of} call per serial
+ * number, and the bulk {@link Denominations#sumDenominations} and {@link Denominations#histogram}, which split
+ * large arrays across cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DenominationBenchmark {
+
+
+    // Fields
+
+    @Param({"1000", "100000", "10000000"})
+    public int count;
+
+    private int[] serialNumbers;
+
+
+    // Methods
+
+    @Setup
+    public void setUp() {
+        serialNumbers = BenchmarkData.serialNumbers(count);
+    }
+
+    @Benchmark
+    public long ofEach() {
+        long total = 0;
+        for (int sn : serialNumbers)
+            total += Denominations.of(sn);
+        return total;
+    }
+
+    @Benchmark
+    public long sumDenominations() {
+        return Denominations.sumDenominations(serialNumbers);
+    }
+
+    @Benchmark
+    public long[] histogram() {
+        return Denominations.histogram(serialNumbers);
+    }
+}
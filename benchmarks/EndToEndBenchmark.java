@@ -0,0 +1,114 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@code EndToEndBenchmark} measures whole server calls, from the {@link CloudBankUtils} method to the decoded
+ * result, against a {@link LocalBank} on the loopback interface. Each call goes through the connection pool, call
+ * policy, circuit breaker, bulkhead and metrics like a call to a real CloudService.
+ * <p>
+ * <br>
+ * Run it with more threads, for example {@code -t 16}, to measure the SDK under contention.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+
+    // Fields
+
+    private static final int RECEIPT_DETAILS = 1000;
+    private static final int STACK_BYTES = 64 * 1024;
+
+    private LocalBank bank;
+    private CloudBankClientFactory factory;
+    private CloudBankUtils cloudBankUtils;
+    private String stack;
+    private Path directory;
+
+
+    // Methods
+
+    @Setup
+    public void setUp() throws IOException {
+        bank = new LocalBank(RECEIPT_DETAILS, STACK_BYTES);
+        factory = CloudBankClientFactory.builder()
+                .setScheme("http")
+                .setCoalesceRequests(false)
+                .build();
+        cloudBankUtils = factory.create(new BankKeys(bank.getPublicKey(), "benchmark", "bench@example.com"));
+        stack = new String(BenchmarkData.stack(STACK_BYTES), StandardCharsets.UTF_8);
+        directory = Files.createTempDirectory("cloudcoin-bench");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        factory.close();
+        bank.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public BankTotal getBankTotal() {
+        return cloudBankUtils.getBankTotal().join();
+    }
+
+    @Benchmark
+    public DepositResponse depositStack() {
+        return cloudBankUtils.depositStack(stack, bank.getPublicKey()).join();
+    }
+
+    @Benchmark
+    public String withdrawStack() {
+        return cloudBankUtils.withdrawStack(1).join();
+    }
+
+    @Benchmark
+    public ReceiptSummary getReceiptSummary() {
+        return cloudBankUtils.getReceiptSummary(BenchmarkData.RECEIPT_NUMBER).join();
+    }
+
+    @Benchmark
+    public Receipt getReceipt() {
+        return cloudBankUtils.getReceipt(BenchmarkData.RECEIPT_NUMBER).join();
+    }
+
+    @Benchmark
+    public Path withdrawStackToFile() throws IOException {
+        Path stackFile = cloudBankUtils.withdrawStackToFile(1, directory).join();
+        // Threads that withdraw in the same millisecond share a file name.
+        Files.deleteIfExists(stackFile);
+        return stackFile;
+    }
+}
@@ -0,0 +1,109 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@code LocalBank} is a CloudService stub for the end-to-end benchmarks. It serves canned responses from memory on
+ * the loopback interface as fast as it can, so the benchmarks measure the SDK rather than the server. Its address is
+ * used as the public key of the benchmark account, and it must be called with the {@code http} scheme.
+ */
+final class LocalBank implements AutoCloseable {
+
+
+    // Fields
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] bankTotal = BenchmarkData.bankTotal().getBytes(StandardCharsets.UTF_8);
+    private final byte[] depositResponse = BenchmarkData.depositResponse().getBytes(StandardCharsets.UTF_8);
+    private final byte[] receipt;
+    private final byte[] stack;
+
+
+    // Constructor
+
+    /**
+     * Starts the stub on a free port.
+     *
+     * @param receiptDetails the number of receipt details in each receipt
+     * @param stackBytes     the size of each withdrawn stack
+     * @throws IOException if the server cannot be started
+     */
+    LocalBank(int receiptDetails, int stackBytes) throws IOException {
+        receipt = BenchmarkData.receipt(receiptDetails).getBytes(StandardCharsets.UTF_8);
+        stack = BenchmarkData.stack(stackBytes);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the address of the stub, to be used as the public key of the benchmark account.
+     *
+     * @returns {@link String}
+     */
+    String getPublicKey() {
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        // Read the whole request, as a real server would, before answering.
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) >= 0) {
+                // Discarded.
+            }
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        if (path.endsWith("/show_coins.aspx"))
+            body = bankTotal;
+        else if (path.endsWith("/deposit_one_stack.aspx") || path.endsWith("/write_check.aspx"))
+            body = depositResponse;
+        else if (path.endsWith("/withdraw_account.aspx") || path.endsWith("/checks.aspx"))
+            body = stack;
+        else if (path.endsWith("/get_receipt.aspx") || path.contains("/Receipts/"))
+            body = receipt;
+        else
+            body = null;
+
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@code StackFileBenchmark} measures {@link CloudBankUtils#loadStackFromFile} and
+ * {@link CloudBankUtils#saveStackToFile} for stacks from 1 KB to 100 MB. The stack to save is withdrawn once from a
+ * {@link LocalBank}, and a deposit first sets the receipt number, so every save overwrites the same file.
+ * <p>
+ * <br>
+ * The 100 MB stack is held in memory several times over; run with a heap of at least 4 GB, as the fork does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StackFileBenchmark {
+
+
+    // Fields
+
+    @Param({"1024", "1048576", "104857600"})
+    public int stackBytes;
+
+    private Path directory;
+    private Path stackFile;
+    private String savePath;
+    private LocalBank bank;
+    private CloudBankClientFactory factory;
+    private CloudBankUtils cloudBankUtils;
+
+
+    // Methods
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cloudcoin-bench");
+        stackFile = directory.resolve("load.stack");
+        BenchmarkData.writeStack(stackFile, stackBytes);
+        savePath = directory.toString() + directory.getFileSystem().getSeparator();
+
+        bank = new LocalBank(10, stackBytes);
+        factory = CloudBankClientFactory.builder()
+                .setScheme("http")
+                .setMaxResponseBodySize(Integer.MAX_VALUE)
+                .build();
+        cloudBankUtils = factory.create(new BankKeys(bank.getPublicKey(), "benchmark", "bench@example.com"));
+        cloudBankUtils.loadStackFromFile(stackFile.toString());
+        cloudBankUtils.sendStackToCloudBank().join();
+        cloudBankUtils.getStackFromCloudBank(1).join();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        factory.close();
+        bank.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public CloudBankUtils loadStackFromFile() throws IOException {
+        cloudBankUtils.loadStackFromFile(stackFile.toString());
+        return cloudBankUtils;
+    }
+
+    @Benchmark
+    public CloudBankUtils saveStackToFile() throws IOException {
+        cloudBankUtils.saveStackToFile(savePath);
+        return cloudBankUtils;
+    }
+}
@@ -0,0 +1,408 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import com.google.gson.Gson;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code LoadGenerator} drives a mixed workload of balance checks, deposits, withdrawals and receipt reads through
+ * {@link CloudBankUtils}, and reports throughput, latency percentiles and allocation rate. It runs against the
+ * accounts in a keys file, or against a built-in {@link CloudServiceSimulator}.
+ * <p>
+ * <br>
+ * With {@code --rate} it uses an open model: calls start on a fixed schedule whether or not earlier calls have
+ * finished, and each latency is measured from the time the call was due to start. A stall therefore shows up in
+ * the latency of every call it delayed, which corrects for coordinated omission. With {@code --concurrency} it uses
+ * a closed model that keeps a fixed number of calls in flight. Latencies are recorded in HdrHistograms.
+ * <p>
+ * <br>
+ * Withdrawn stacks are kept by the account that withdrew them and deposited again by later deposit calls, so a run
+ * against real accounts moves coins around without losing them. Stacks still held at the end are deposited back.
+ * A deposit with no stack to deposit withdraws one instead, and a receipt read before any deposit reads the
+ * balance; the report counts the calls that were actually made.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>java CloudCoinJavaSDK.LoadGenerator --rate 2000 --duration 60 --latency 5:20</code>
+ */
+public class LoadGenerator {
+
+
+    // Fields
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final LoadOptions options;
+    private final Call[] wheel;
+    private final Map<Call, Histogram> latencies = new EnumMap<>(Call.class);
+    private final Map<Call, LongAdder> errors = new EnumMap<>(Call.class);
+    private final Histogram allLatencies = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<Account> accounts = new ArrayList<>();
+    private volatile long measureFrom = Long.MAX_VALUE;
+
+
+    // Constructor
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+        List<Call> calls = new ArrayList<>();
+        options.mix.forEach((call, weight) -> {
+            for (int i = 0; i < weight; i++)
+                calls.add(call);
+        });
+        if (calls.isEmpty())
+            throw new IllegalArgumentException("The call mix is empty");
+        wheel = calls.toArray(new Call[0]);
+        for (Call call : Call.values()) {
+            latencies.put(call, new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3));
+            errors.put(call, new LongAdder());
+        }
+    }
+
+
+    // Methods
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(options).run(System.out);
+    }
+
+    /**
+     * Runs the warmup and the measured period, and prints the report to {@code out}.
+     *
+     * @param out where the report is printed
+     * @throws IOException if the keys file cannot be read or the simulator cannot start
+     * @throws InterruptedException if the run is interrupted
+     */
+    public void run(PrintStream out) throws IOException, InterruptedException {
+        CloudServiceSimulator simulator = null;
+        String scheme = options.scheme;
+        BankKeys[] keys;
+        if (options.keys != null) {
+            try (Reader reader = Files.newBufferedReader(options.keys)) {
+                keys = new Gson().fromJson(reader, BankKeys[].class);
+            }
+        } else {
+            SimulatorOptions simulatorOptions = new SimulatorOptions();
+            simulatorOptions.minLatency = options.minLatency;
+            simulatorOptions.maxLatency = options.maxLatency;
+            simulatorOptions.errorRate = options.errorRate;
+            simulator = new CloudServiceSimulator(simulatorOptions);
+            scheme = "http";
+            keys = new BankKeys[options.accounts];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = new BankKeys(simulator.getPublicKey(), "loadgen-" + i, "loadgen@example.com");
+        }
+
+        CloudBankStats stats = new CloudBankStats();
+        ExecutorService continuations = Executors.newFixedThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try (CloudBankClientFactory factory = CloudBankClientFactory.builder()
+                .setScheme(scheme)
+                .setMaxConnectionsPerHost(options.maxConnections)
+                .setMaxConcurrentCallsPerHost(options.maxConnections, 1 << 16)
+                .setMetrics(stats)
+                .build()) {
+            for (BankKeys key : keys)
+                accounts.add(new Account(factory.create(key), key.publickey));
+
+            long start = System.nanoTime();
+            measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmup);
+            long end = measureFrom + TimeUnit.SECONDS.toNanos(options.duration);
+            long allocatedBefore = options.rate > 0 ? runOpen(start, end) : runClosed(end, continuations);
+            long measuredNanos = System.nanoTime() - measureFrom;
+            long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+
+            awaitInFlight();
+            int returned = returnStacks();
+            report(out, measuredNanos, allocated, stats, returned);
+        } finally {
+            continuations.shutdownNow();
+            if (simulator != null)
+                simulator.close();
+        }
+    }
+
+    /**
+     * Starts calls at the target rate until {@code end}, and returns the bytes allocated when measuring began.
+     */
+    private long runOpen(long start, long end) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / options.rate;
+        long allocatedBefore = -1;
+        for (long i = 0; ; i++) {
+            long due = start + i * interval;
+            if (due >= end)
+                break;
+            long now;
+            while ((now = System.nanoTime()) < due)
+                LockSupport.parkNanos(due - now);
+            if (allocatedBefore < 0 && due >= measureFrom)
+                allocatedBefore = allocatedBytes();
+            issue(pick(), due);
+        }
+        return allocatedBefore;
+    }
+
+    /**
+     * Keeps {@link LoadOptions#concurrency} calls in flight until {@code end}, and returns the bytes allocated when
+     * measuring began.
+     */
+    private long runClosed(long end, ExecutorService continuations) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(options.concurrency);
+        for (int i = 0; i < options.concurrency; i++)
+            loop(end, done, continuations);
+        long untilMeasuring = measureFrom - System.nanoTime();
+        if (untilMeasuring > 0)
+            TimeUnit.NANOSECONDS.sleep(untilMeasuring);
+        long allocatedBefore = allocatedBytes();
+        done.await();
+        return allocatedBefore;
+    }
+
+    private void loop(long end, CountDownLatch done, ExecutorService continuations) {
+        long now = System.nanoTime();
+        if (now >= end) {
+            done.countDown();
+            return;
+        }
+        // The next call starts on another thread, so a call that fails at once cannot recurse.
+        issue(pick(), now).thenRunAsync(() -> loop(end, done, continuations), continuations);
+    }
+
+    private Call pick() {
+        return wheel[ThreadLocalRandom.current().nextInt(wheel.length)];
+    }
+
+    /**
+     * Starts one call on a random account. The returned future completes once its latency has been recorded, and
+     * never completes exceptionally.
+     *
+     * @param call the kind of call to make
+     * @param due  System.nanoTime() at which the call was due to start, which its latency is measured from
+     * @returns {@link CompletableFuture}
+     */
+    private CompletableFuture<Void> issue(Call call, long due) {
+        Account account = accounts.get(ThreadLocalRandom.current().nextInt(accounts.size()));
+        inFlight.incrementAndGet();
+        Call made = call;
+        CompletableFuture<?> future;
+        try {
+            switch (call) {
+                case DEPOSIT:
+                    String stack = account.stacks.poll();
+                    if (stack == null) {
+                        made = Call.WITHDRAW;
+                        future = account.withdraw(options.amount);
+                    } else {
+                        future = account.deposit(stack);
+                    }
+                    break;
+                case WITHDRAW:
+                    future = account.withdraw(options.amount);
+                    break;
+                case RECEIPT:
+                    String receiptNumber = account.lastReceipt.get();
+                    if (receiptNumber == null) {
+                        made = Call.BALANCE;
+                        future = account.cloudBankUtils.getBankTotal();
+                    } else {
+                        future = account.cloudBankUtils.getReceiptSummary(receiptNumber);
+                    }
+                    break;
+                default:
+                    future = account.cloudBankUtils.getBankTotal();
+                    break;
+            }
+        } catch (RuntimeException e) {
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            future = failed;
+        }
+
+        Call recorded = made;
+        return future.handle((result, t) -> {
+            record(recorded, due, t);
+            inFlight.decrementAndGet();
+            return null;
+        });
+    }
+
+    private void record(Call call, long due, Throwable failure) {
+        if (due < measureFrom)
+            return;
+        long micros = Math.min(HIGHEST_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+        latencies.get(call).recordValue(micros);
+        allLatencies.recordValue(micros);
+        if (failure != null)
+            errors.get(call).increment();
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline)
+            TimeUnit.MILLISECONDS.sleep(10);
+    }
+
+    /**
+     * Deposits every stack still held back into the account that withdrew it, and returns how many were deposited.
+     */
+    private int returnStacks() {
+        List<CompletableFuture<?>> deposits = new ArrayList<>();
+        for (Account account : accounts) {
+            String stack;
+            while ((stack = account.stacks.poll()) != null)
+                deposits.add(account.cloudBankUtils.depositStack(stack, account.publicKey));
+        }
+        int returned = 0;
+        for (CompletableFuture<?> deposit : deposits) {
+            try {
+                deposit.get(1, TimeUnit.MINUTES);
+                returned++;
+            } catch (Exception e) {
+                // Reported as a stack that was not returned.
+            }
+        }
+        if (returned < deposits.size())
+            System.err.println((deposits.size() - returned) + " withdrawn stacks could not be deposited back");
+        return returned;
+    }
+
+    private void report(PrintStream out, long measuredNanos, long allocated, CloudBankStats stats, int returned) {
+        double seconds = measuredNanos / 1e9;
+        out.println(options.rate > 0
+                ? "Open model, " + options.rate + " calls/s target, " + accounts.size() + " accounts"
+                : "Closed model, " + options.concurrency + " calls in flight, " + accounts.size() + " accounts");
+        out.printf("Measured %.1f s after %d s warmup%n%n", seconds, options.warmup);
+        out.printf("%-10s %10s %8s %10s %9s %9s %9s %9s%n",
+                "call", "count", "errors", "calls/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        long failed = 0;
+        for (Call call : Call.values()) {
+            long count = latencies.get(call).getTotalCount();
+            if (count == 0)
+                continue;
+            long callErrors = errors.get(call).sum();
+            failed += callErrors;
+            printRow(out, call.name().toLowerCase(), latencies.get(call), callErrors, seconds);
+        }
+        printRow(out, "all", allLatencies, failed, seconds);
+
+        long calls = allLatencies.getTotalCount();
+        if (allocated >= 0 && calls > 0) {
+            out.printf("%nAllocation: %.1f MB/s, %.1f KB per call (whole JVM%s)%n", allocated / seconds / 1e6,
+                    allocated / 1024.0 / calls, options.keys == null ? ", including the simulator" : "");
+        }
+
+        out.println();
+        out.println("Errors by type, including warmup:");
+        for (CloudOperation operation : CloudOperation.values()) {
+            Map<String, Long> byType = stats.get(operation).getErrors();
+            if (!byType.isEmpty())
+                out.println("  " + operation.endpoint() + " " + byType);
+        }
+        out.println("Withdrawn stacks deposited back: " + returned);
+    }
+
+    private static void printRow(PrintStream out, String name, Histogram histogram, long errors, double seconds) {
+        out.printf("%-10s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getTotalCount(), errors,
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * Returns the bytes allocated so far by every live thread, or -1 if the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+            total += Math.max(0, bytes);
+        return total;
+    }
+
+
+    /**
+     * Call is a kind of call in the workload mix.
+     */
+    public enum Call {
+        BALANCE, DEPOSIT, WITHDRAW, RECEIPT
+    }
+
+
+    /**
+     * Account is one account of the run, with the stacks it has withdrawn and not yet deposited again.
+     */
+    private static final class Account {
+
+        final CloudBankUtils cloudBankUtils;
+        final String publicKey;
+        final Queue<String> stacks = new ConcurrentLinkedQueue<>();
+        final AtomicReference<String> lastReceipt = new AtomicReference<>();
+
+        Account(CloudBankUtils cloudBankUtils, String publicKey) {
+            this.cloudBankUtils = cloudBankUtils;
+            this.publicKey = publicKey;
+        }
+
+        CompletableFuture<String> withdraw(int amount) {
+            return cloudBankUtils.withdrawStack(amount).thenApply(stack -> {
+                stacks.add(stack);
+                return stack;
+            });
+        }
+
+        CompletableFuture<DepositResponse> deposit(String stack) {
+            return cloudBankUtils.depositStack(stack, publicKey).whenComplete((response, t) -> {
+                if (t == null)
+                    lastReceipt.set(response.receipt);
+                else
+                    // The stack may not have been deposited; keep it so that it is not lost.
+                    stacks.add(stack);
+            });
+        }
+    }
+}
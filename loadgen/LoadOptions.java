@@ -0,0 +1,192 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * {@code LoadOptions} holds the settings of a {@link LoadGenerator} run, parsed from its command line. Durations are
+ * in seconds unless stated otherwise.
+ */
+public class LoadOptions {
+
+
+    // Fields
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: LoadGenerator [options]",
+            "  --rate <n>              open model: start n calls a second, whatever the response times",
+            "  --concurrency <n>       closed model: keep n calls in flight (used when --rate is not set)",
+            "  --duration <s>          how long to measure (default 60)",
+            "  --warmup <s>            how long to run before measuring (default 10)",
+            "  --mix <op=w,...>        weights of balance, deposit, withdraw and receipt calls",
+            "                          (default balance=60,deposit=15,withdraw=15,receipt=10)",
+            "  --amount <n>            CloudCoins moved by each withdrawal (default 1)",
+            "  --keys <file>           JSON array of BankKeys for the accounts to call",
+            "  --scheme <scheme>       URL scheme of the accounts in --keys (default https)",
+            "  --accounts <n>          number of simulated accounts when --keys is not set (default 16)",
+            "  --latency <min:max>     latency of the built-in simulator, in ms (default 0:0)",
+            "  --error-rate <f>        fraction of simulator responses that are HTTP 500 (default 0)",
+            "  --max-connections <n>   connections per host in the SDK's pool (default 256)");
+
+    /**
+     * Calls started each second in the open model, or 0 to use the closed model.
+     */
+    public int rate;
+
+    /**
+     * Calls kept in flight in the closed model.
+     */
+    public int concurrency = 64;
+
+    /**
+     * How long calls are measured.
+     */
+    public int duration = 60;
+
+    /**
+     * How long calls run before they are measured.
+     */
+    public int warmup = 10;
+
+    /**
+     * The relative weight of each kind of call.
+     */
+    public Map<LoadGenerator.Call, Integer> mix = defaultMix();
+
+    /**
+     * CloudCoins moved by each withdrawal.
+     */
+    public int amount = 1;
+
+    /**
+     * A JSON file holding an array of {@link BankKeys}, or null to run against the built-in
+     * {@link CloudServiceSimulator}.
+     */
+    public Path keys;
+
+    /**
+     * The URL scheme of the accounts in {@link #keys}.
+     */
+    public String scheme = "https";
+
+    /**
+     * The number of accounts created on the built-in simulator.
+     */
+    public int accounts = 16;
+
+    /**
+     * The shortest latency of the built-in simulator, in milliseconds.
+     */
+    public int minLatency;
+
+    /**
+     * The longest latency of the built-in simulator, in milliseconds.
+     */
+    public int maxLatency;
+
+    /**
+     * The fraction of built-in simulator responses that are HTTP 500.
+     */
+    public double errorRate;
+
+    /**
+     * The number of connections per host in the SDK's pool.
+     */
+    public int maxConnections = 256;
+
+
+    // Methods
+
+    /**
+     * Parses the command line of {@link LoadGenerator}.
+     *
+     * @param args the command line arguments
+     * @returns {@link LoadOptions}
+     * @throws IllegalArgumentException if an argument is unknown or malformed
+     */
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("Missing value for " + name);
+            String value = args[++i];
+            switch (name) {
+                case "--rate":
+                    options.rate = Integer.parseInt(value);
+                    break;
+                case "--concurrency":
+                    options.concurrency = Integer.parseInt(value);
+                    break;
+                case "--duration":
+                    options.duration = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    options.warmup = Integer.parseInt(value);
+                    break;
+                case "--mix":
+                    options.mix = parseMix(value);
+                    break;
+                case "--amount":
+                    options.amount = Integer.parseInt(value);
+                    break;
+                case "--keys":
+                    options.keys = Paths.get(value);
+                    break;
+                case "--scheme":
+                    options.scheme = value;
+                    break;
+                case "--accounts":
+                    options.accounts = Integer.parseInt(value);
+                    break;
+                case "--latency":
+                    int colon = value.indexOf(':');
+                    options.minLatency = Integer.parseInt(colon < 0 ? value : value.substring(0, colon));
+                    options.maxLatency = colon < 0
+                            ? options.minLatency : Integer.parseInt(value.substring(colon + 1));
+                    break;
+                case "--error-rate":
+                    options.errorRate = Double.parseDouble(value);
+                    break;
+                case "--max-connections":
+                    options.maxConnections = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        if (options.rate <= 0 && options.concurrency <= 0)
+            throw new IllegalArgumentException("Set --rate or --concurrency above 0");
+        return options;
+    }
+
+    private static Map<LoadGenerator.Call, Integer> defaultMix() {
+        Map<LoadGenerator.Call, Integer> mix = new EnumMap<>(LoadGenerator.Call.class);
+        mix.put(LoadGenerator.Call.BALANCE, 60);
+        mix.put(LoadGenerator.Call.DEPOSIT, 15);
+        mix.put(LoadGenerator.Call.WITHDRAW, 15);
+        mix.put(LoadGenerator.Call.RECEIPT, 10);
+        return mix;
+    }
+
+    private static Map<LoadGenerator.Call, Integer> parseMix(String value) {
+        Map<LoadGenerator.Call, Integer> mix = new EnumMap<>(LoadGenerator.Call.class);
+        for (String part : value.split(",")) {
+            int equals = part.indexOf('=');
+            if (equals <= 0)
+                throw new IllegalArgumentException("Malformed --mix entry " + part);
+            mix.put(LoadGenerator.Call.valueOf(part.substring(0, equals).trim().toUpperCase()),
+                    Integer.parseInt(part.substring(equals + 1).trim()));
+        }
+        return mix;
+    }
+}
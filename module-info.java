@@ -0,0 +1,26 @@
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * The CloudCoin Java SDK. The dependencies have no module descriptors, so they are required by the names the JDK
+ * derives from their jars. AsyncHttpClient 2.0.x ships its own copies of some Netty classes, so it cannot share the
+ * module path with Netty: it is only required at compile time, and at run time stays on the class path, read with
+ * {@code --add-reads CloudCoinJavaSDK=ALL-UNNAMED}. See BUILDING.md.
+ */
+module CloudCoinJavaSDK {
+    requires gson;
+    requires static async.http.client;
+    requires netty.buffer;
+    requires netty.codec.http;
+    requires slf4j.api;
+    requires jdk.jfr;
+
+    exports CloudCoinJavaSDK;
+
+    // Gson reads and writes the response classes' fields by reflection.
+    opens CloudCoinJavaSDK to gson;
+}
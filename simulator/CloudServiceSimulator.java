@@ -0,0 +1,451 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@code CloudServiceSimulator} is a fake CloudService that runs inside the JVM on the JDK's {@link HttpServer}. It
+ * answers {@code show_coins.aspx}, {@code deposit_one_stack.aspx}, {@code withdraw_account.aspx},
+ * {@code get_receipt.aspx}, {@code write_check.aspx}, {@code checks.aspx} and {@code /{privatekey}/Receipts/{n}.json}
+ * like a real server, so the SDK can be load-tested with no network and no real CloudCoins.
+ * <p>
+ * <br>
+ * Every private key is an account of its own, created with {@link SimulatorOptions#initialCoins} on first use.
+ * Deposits add the coins of the stack and write a receipt; withdrawals and checks take coins out and return
+ * generated stacks. Latency and faults are injected as set in {@link SimulatorOptions}. Delayed responses wait on a
+ * timer rather than a thread, so a laptop can serve thousands of requests a second even with added latency.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>try (CloudServiceSimulator simulator = new CloudServiceSimulator(options)) {</code>
+ * <br>
+ * <code>    CloudBankClientFactory factory = CloudBankClientFactory.builder().setScheme("http").build();</code>
+ * <br>
+ * <code>    BankKeys keys = new BankKeys(simulator.getPublicKey(), "any private key", "test@example.com");</code>
+ * <br>
+ * <code>}</code>
+ */
+public class CloudServiceSimulator implements AutoCloseable {
+
+
+    // Fields
+
+    private static final Pattern SERIAL_NUMBER = Pattern.compile("\"sn\"\\s*:\\s*\"?(\\d+)");
+    // The first 2^21 serial number block of each denomination, and the number of blocks it spans.
+    private static final int[] FIRST_BLOCK = {0, 1, 2, 3, 7};
+    private static final int[] BLOCKS = {1, 1, 1, 4, 1};
+
+    private final SimulatorOptions options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> checks = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+
+
+    // Constructor
+
+    /**
+     * Starts a simulator on the loopback interface.
+     *
+     * @param options the {@link SimulatorOptions} of the simulator
+     * @throws IOException if the port cannot be bound
+     */
+    public CloudServiceSimulator(SimulatorOptions options) throws IOException {
+        this.options = options;
+        executor = Executors.newFixedThreadPool(Math.max(1, options.threads), runnable -> {
+            Thread thread = new Thread(runnable, "CloudServiceSimulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CloudServiceSimulator-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", options.port), 4096);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+
+    // Methods
+
+    /**
+     * Returns the address of the simulator, such as {@code 127.0.0.1:51234}. Use it as the public key of the
+     * simulated accounts, with {@link CloudBankClientFactory.Builder#setScheme} set to {@code http}.
+     *
+     * @returns {@link String}
+     */
+    public String getPublicKey() {
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of requests received.
+     *
+     * @returns long
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the total value of the CloudCoins held by the account of {@code privateKey}.
+     *
+     * @returns long
+     */
+    public long getBalance(String privateKey) {
+        return account(privateKey).value();
+    }
+
+    /**
+     * Stops the simulator. Responses still waiting for their latency are dropped.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        Map<String, String> params = readParams(exchange);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        int delay = random.nextDouble() < options.tailRate ? options.tailLatency
+                : options.minLatency + random.nextInt(Math.max(1, options.maxLatency - options.minLatency + 1));
+        Runnable respond;
+        if (random.nextDouble() < options.dropRate) {
+            respond = exchange::close;
+        } else if (random.nextDouble() < options.errorRate) {
+            respond = () -> send(exchange, 500, "text/plain", "Internal Server Error");
+        } else if (random.nextDouble() < options.failRate) {
+            respond = () -> send(exchange, 200, "application/json", fail("Simulated refusal"));
+        } else {
+            String body = answer(exchange.getRequestURI().getPath(), params);
+            int status = body == null ? 404 : 200;
+            String type = body != null && body.startsWith("{\"cloudcoin\"") ? "text/plain" : "application/json";
+            respond = () -> send(exchange, status, type, body == null ? "" : body);
+        }
+
+        if (delay <= 0)
+            respond.run();
+        else
+            timer.schedule(() -> executor.execute(respond), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private String answer(String path, Map<String, String> params) {
+        String pk = params.get("pk");
+        if (path.endsWith("/show_coins.aspx"))
+            return account(pk).showCoins();
+        if (path.endsWith("/deposit_one_stack.aspx"))
+            return account(pk).deposit(params.get("stack"));
+        if (path.endsWith("/withdraw_account.aspx"))
+            return account(pk).withdraw(parseAmount(params.get("amount")));
+        if (path.endsWith("/get_receipt.aspx"))
+            return account(pk).receipt(params.get("rn"));
+        if (path.endsWith("/write_check.aspx"))
+            return account(pk).writeCheck(parseAmount(params.get("amount")));
+        if (path.endsWith("/checks.aspx"))
+            return cashCheck(params.get("id"));
+
+        // /{privatekey}/Receipts/{receipt number}.json
+        int receipts = path.indexOf("/Receipts/");
+        if (receipts > 0 && path.endsWith(".json"))
+            return account(path.substring(1, receipts))
+                    .receipt(path.substring(receipts + "/Receipts/".length(), path.length() - ".json".length()));
+        return null;
+    }
+
+    private String cashCheck(String id) {
+        String stack = id == null ? null : checks.remove(id);
+        return stack != null ? stack : fail("Check not found or already cashed");
+    }
+
+    private Account account(String privateKey) {
+        return accounts.computeIfAbsent(privateKey == null ? "" : privateKey, key -> new Account());
+    }
+
+    private String fail(String message) {
+        JsonObject json = response("fail");
+        json.addProperty("message", message);
+        return pad(gson.toJson(json));
+    }
+
+    private JsonObject response(String status) {
+        JsonObject json = new JsonObject();
+        json.addProperty("bank_server", "simulator");
+        json.addProperty("time", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        json.addProperty("status", status);
+        return json;
+    }
+
+    private String pad(String json) {
+        if (options.responsePadding <= 0)
+            return json;
+        StringBuilder padded = new StringBuilder(json.length() + options.responsePadding).append(json);
+        for (int i = 0; i < options.responsePadding; i++)
+            padded.append(' ');
+        return padded.toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String type, String body) {
+        try {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", type);
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            // The client has gone away.
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0)
+                body.write(buffer, 0, read);
+        }
+        parseForm(new String(body.toByteArray(), StandardCharsets.ISO_8859_1), params);
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) throws IOException {
+        if (form == null || form.isEmpty())
+            return;
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals <= 0)
+                continue;
+            params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                    URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+        }
+    }
+
+    private static int parseAmount(String amount) {
+        try {
+            return amount == null ? 0 : Integer.parseInt(amount.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int serialNumber(int denominationIndex, ThreadLocalRandom random) {
+        return (FIRST_BLOCK[denominationIndex] << 21) + 1 + random.nextInt(BLOCKS[denominationIndex] << 21);
+    }
+
+    private static String hex(ThreadLocalRandom random) {
+        // The top bit is set so that each half is always 16 digits long.
+        return Long.toHexString(random.nextLong() | Long.MIN_VALUE)
+                + Long.toHexString(random.nextLong() | Long.MIN_VALUE);
+    }
+
+
+    /**
+     * Account is one simulated bank account. Its coins are counted per denomination in atomics, so concurrent
+     * deposits and withdrawals never lose coins.
+     */
+    private final class Account {
+
+        private final AtomicLongArray coins = new AtomicLongArray(Denominations.values().length);
+        private final Map<String, String> receipts = new ConcurrentHashMap<>();
+        private final Queue<String> receiptOrder = new ConcurrentLinkedQueue<>();
+
+        Account() {
+            for (int i = 0; i < coins.length() && i < options.initialCoins.length; i++)
+                coins.set(i, options.initialCoins[i]);
+        }
+
+        long value() {
+            int[] values = Denominations.values();
+            long value = 0;
+            for (int i = 0; i < values.length; i++)
+                value += coins.get(i) * values[i];
+            return value;
+        }
+
+        String showCoins() {
+            JsonObject json = response("coins_shown");
+            json.addProperty("ones", coins.get(0));
+            json.addProperty("fives", coins.get(1));
+            json.addProperty("twentyfives", coins.get(2));
+            json.addProperty("hundreds", coins.get(3));
+            json.addProperty("twohundredfifties", coins.get(4));
+            return pad(gson.toJson(json));
+        }
+
+        String deposit(String stack) {
+            if (stack == null || !StackFileHandler.isStack(stack))
+                return fail("The stack file was not valid");
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String receiptNumber = hex(random);
+            JsonArray details = new JsonArray();
+            int authentic = 0;
+            int counterfeit = 0;
+            Matcher matcher = SERIAL_NUMBER.matcher(stack);
+            while (matcher.find()) {
+                int sn;
+                try {
+                    sn = Integer.parseInt(matcher.group(1));
+                } catch (NumberFormatException e) {
+                    sn = 0;
+                }
+                boolean genuine = Denominations.isValid(sn) && random.nextDouble() >= options.counterfeitRate;
+                if (genuine) {
+                    coins.incrementAndGet(Denominations.indexOf(sn));
+                    authentic++;
+                } else {
+                    counterfeit++;
+                }
+                JsonObject detail = new JsonObject();
+                detail.addProperty("nn", 1);
+                detail.addProperty("sn", sn);
+                detail.addProperty("status", genuine ? "authentic" : "counterfeit");
+                detail.addProperty("pown", genuine ? "ppppppppppppppppppppppppp" : "fffffffffffffffffffffffff");
+                detail.addProperty("note", genuine ? "Moved to Bank" : "Sent to trash");
+                details.add(detail);
+            }
+
+            JsonObject receipt = response("receipt");
+            receipt.addProperty("receipt_id", receiptNumber);
+            receipt.addProperty("timezone", "UTC");
+            receipt.addProperty("total_authentic", authentic);
+            receipt.addProperty("total_fracked", 0);
+            receipt.addProperty("total_counterfeit", counterfeit);
+            receipt.addProperty("total_lost", 0);
+            receipt.add("receipt_detail", details);
+            receipts.put(receiptNumber, pad(gson.toJson(receipt)));
+            receiptOrder.add(receiptNumber);
+            while (receiptOrder.size() > Math.max(1, options.maxReceipts)) {
+                String oldest = receiptOrder.poll();
+                if (oldest != null)
+                    receipts.remove(oldest);
+            }
+
+            JsonObject json = response("importing");
+            json.addProperty("message", "The stack file has been imported and detection will begin automatically"
+                    + " so long as they are not too many coins in the stack file.");
+            json.addProperty("receipt", receiptNumber);
+            return pad(gson.toJson(json));
+        }
+
+        String receipt(String receiptNumber) {
+            String receipt = receiptNumber == null ? null : receipts.get(receiptNumber);
+            return receipt != null ? receipt : fail("Receipt not found");
+        }
+
+        String withdraw(int amount) {
+            int[] taken = take(amount);
+            return taken == null ? fail("Not enough CloudCoins to withdraw " + amount) : stack(taken);
+        }
+
+        String writeCheck(int amount) {
+            int[] taken = take(amount);
+            if (taken == null)
+                return fail("Not enough CloudCoins to write a check for " + amount);
+            String id = hex(ThreadLocalRandom.current());
+            checks.put(id, stack(taken));
+            JsonObject json = response("url");
+            json.addProperty("message", "https://" + getPublicKey() + "/checks.aspx?id=" + id + "&receive=json");
+            return pad(gson.toJson(json));
+        }
+
+        /**
+         * Takes coins worth exactly {@code amount}, largest denominations first, and returns how many of each were
+         * taken, or null if the account cannot make the amount.
+         */
+        private int[] take(int amount) {
+            if (amount <= 0)
+                return null;
+            int[] values = Denominations.values();
+            int[] taken = new int[values.length];
+            int left = amount;
+            for (int i = values.length - 1; i >= 0 && left > 0; i--) {
+                while (left >= values[i]) {
+                    long held = coins.get(i);
+                    if (held <= 0)
+                        break;
+                    long count = Math.min(held, left / values[i]);
+                    if (coins.compareAndSet(i, held, held - count)) {
+                        taken[i] += (int) count;
+                        left -= (int) count * values[i];
+                    }
+                }
+            }
+            if (left == 0)
+                return taken;
+            for (int i = 0; i < taken.length; i++)
+                coins.addAndGet(i, taken[i]);
+            return null;
+        }
+
+        private String stack(int[] taken) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            StringBuilder stack = new StringBuilder("{\"cloudcoin\":[");
+            boolean first = true;
+            for (int i = 0; i < taken.length; i++) {
+                for (int coin = 0; coin < taken[i]; coin++) {
+                    if (!first)
+                        stack.append(',');
+                    first = false;
+                    stack.append("{\"nn\":\"1\",\"sn\":\"").append(serialNumber(i, random)).append("\",\"an\":[");
+                    for (int an = 0; an < 25; an++) {
+                        if (an > 0)
+                            stack.append(',');
+                        stack.append('"').append(hex(random)).append('"');
+                    }
+                    stack.append("],\"ed\":\"9-2020\",\"pown\":\"ppppppppppppppppppppppppp\",\"aoid\":[]}");
+                }
+            }
+            return stack.append("]}").toString();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+/**
+ * {@code SimulatorOptions} controls a {@link CloudServiceSimulator}: its latency, the faults it injects and the size
+ * of its responses. Rates are fractions of requests between 0 and 1, and durations are in milliseconds.
+ * <br>
+ * <h3>Usage</h3>
+ * <p>
+ * <code>SimulatorOptions options = new SimulatorOptions();</code>
+ * <br>
+ * <code>options.minLatency = 20;</code>
+ * <br>
+ * <code>options.maxLatency = 40;</code>
+ * <br>
+ * <code>options.errorRate = 0.01;</code>
+ */
+public class SimulatorOptions {
+
+
+    // Fields
+
+    /**
+     * The port to listen on. The default is 0, which picks a free port.
+     */
+    public int port;
+
+    /**
+     * The number of threads that read requests and write responses.
+     */
+    public int threads = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * The shortest time a response is held back.
+     */
+    public int minLatency;
+
+    /**
+     * The longest time a response is held back. Each response waits a uniformly random time between
+     * {@link #minLatency} and this.
+     */
+    public int maxLatency;
+
+    /**
+     * The fraction of responses that are held back for {@link #tailLatency} instead, to produce a latency tail.
+     */
+    public double tailRate;
+
+    /**
+     * The latency of the responses picked by {@link #tailRate}.
+     */
+    public int tailLatency = 1000;
+
+    /**
+     * The fraction of requests answered with HTTP 500.
+     */
+    public double errorRate;
+
+    /**
+     * The fraction of requests refused with HTTP 200 and a {@code "status": "fail"} response, as a CloudService
+     * does when it rejects a call.
+     */
+    public double failRate;
+
+    /**
+     * The fraction of requests whose connection is closed without any response.
+     */
+    public double dropRate;
+
+    /**
+     * The fraction of deposited CloudCoins that the receipt marks as counterfeit. They are not added to the balance.
+     */
+    public double counterfeitRate;
+
+    /**
+     * The number of whitespace bytes added to every JSON response, to simulate larger responses.
+     */
+    public int responsePadding;
+
+    /**
+     * The CloudCoins each account holds when it is first used, by denomination: ones, fives, twenty-fives,
+     * hundreds and two-hundred-fifties.
+     */
+    public int[] initialCoins = {1000, 200, 40, 10, 4};
+
+    /**
+     * The largest number of receipts kept for each account. Older receipts are forgotten.
+     */
+    public int maxReceipts = 1000;
+}
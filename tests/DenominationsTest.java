@@ -0,0 +1,132 @@
+package CloudCoinJavaSDK;
+
+/*
+  Copyright (c) 2018 Ben Ward, 15/06/18
+
+  This work is licensed under the terms of the MIT license.
+  For a copy, see <https://opensource.org/licenses/MIT>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link Denominations} against the serial number ranges of each denomination.
+ */
+class DenominationsTest {
+
+
+    // Fields
+
+    private static final int[] INVALID = {0, -1, Denominations.MAX_SERIAL_NUMBER + 1, Integer.MIN_VALUE,
+            Integer.MAX_VALUE};
+
+    // Larger than the threshold above which arrays are summed in parallel, and not a whole number of chunks.
+    private static final int LARGE = (1 << 18) + 7;
+
+
+    // Methods
+
+    @Test
+    void blockBoundaries() {
+        assertDenomination(1, 1, 0);
+        assertDenomination(2097152, 1, 0);
+        assertDenomination(2097153, 5, 1);
+        assertDenomination(4194304, 5, 1);
+        assertDenomination(4194305, 25, 2);
+        assertDenomination(6291456, 25, 2);
+        assertDenomination(6291457, 100, 3);
+        assertDenomination(14680064, 100, 3);
+        assertDenomination(14680065, 250, 4);
+        assertDenomination(16777216, 250, 4);
+    }
+
+    @Test
+    void everySerialNumberMatchesItsRange() {
+        for (int sn = Denominations.MIN_SERIAL_NUMBER; sn <= Denominations.MAX_SERIAL_NUMBER; sn++) {
+            int expected = expectedDenomination(sn);
+            if (Denominations.of(sn) != expected)
+                assertEquals(expected, Denominations.of(sn), "serial number " + sn);
+        }
+    }
+
+    @Test
+    void invalidSerialNumbers() {
+        for (int sn : INVALID) {
+            assertFalse(Denominations.isValid(sn), "serial number " + sn);
+            assertEquals(0, Denominations.ofOrZero(sn), "serial number " + sn);
+            assertThrows(IllegalArgumentException.class, () -> Denominations.of(sn));
+            assertThrows(IllegalArgumentException.class, () -> Denominations.indexOf(sn));
+        }
+        assertTrue(Denominations.isValid(Denominations.MIN_SERIAL_NUMBER));
+        assertTrue(Denominations.isValid(Denominations.MAX_SERIAL_NUMBER));
+    }
+
+    @Test
+    void sumAndHistogramOfSmallArray() {
+        int[] sns = {1, 2097153, 4194305, 6291457, 14680065, 16777216};
+        assertEquals(631, Denominations.sumDenominations(sns));
+        assertArrayEquals(new long[]{1, 1, 1, 1, 2}, Denominations.histogram(sns));
+        assertEquals(0, Denominations.sumDenominations(new int[0]));
+        assertArrayEquals(new long[5], Denominations.histogram(new int[0]));
+    }
+
+    @Test
+    void sumAndHistogramOfLargeArrayInParallel() {
+        int[] sns = new Random(LARGE).ints(LARGE, Denominations.MIN_SERIAL_NUMBER,
+                Denominations.MAX_SERIAL_NUMBER + 1).toArray();
+        long sum = 0;
+        long[] counts = new long[5];
+        int[] values = Denominations.values();
+        for (int sn : sns) {
+            int value = expectedDenomination(sn);
+            sum += value;
+            for (int i = 0; i < values.length; i++)
+                if (values[i] == value)
+                    counts[i]++;
+        }
+        assertEquals(sum, Denominations.sumDenominations(sns));
+        assertArrayEquals(counts, Denominations.histogram(sns));
+    }
+
+    @Test
+    void invalidSerialNumberFailsBulkMethods() {
+        int[] small = {1, 0, 5};
+        assertThrows(IllegalArgumentException.class, () -> Denominations.sumDenominations(small));
+        assertThrows(IllegalArgumentException.class, () -> Denominations.histogram(small));
+
+        int[] large = new int[LARGE];
+        Arrays.fill(large, 1);
+        large[LARGE - 1] = Denominations.MAX_SERIAL_NUMBER + 1;
+        assertThrows(IllegalArgumentException.class, () -> Denominations.sumDenominations(large));
+        assertThrows(IllegalArgumentException.class, () -> Denominations.histogram(large));
+    }
+
+    private static void assertDenomination(int sn, int value, int index) {
+        assertEquals(value, Denominations.of(sn), "serial number " + sn);
+        assertEquals(value, Denominations.ofOrZero(sn), "serial number " + sn);
+        assertEquals(index, Denominations.indexOf(sn), "serial number " + sn);
+        assertEquals(value, Denominations.values()[index]);
+    }
+
+    // The ranges as the SDK first wrote them, before the lookup table.
+    private static int expectedDenomination(int sn) {
+        if (sn < 2097153)
+            return 1;
+        if (sn < 4194305)
+            return 5;
+        if (sn < 6291457)
+            return 25;
+        if (sn < 14680065)
+            return 100;
+        return 250;
+    }
+}